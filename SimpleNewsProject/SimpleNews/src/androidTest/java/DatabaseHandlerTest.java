@@ -1,14 +1,21 @@
 
+import android.database.Cursor;
 import android.test.InstrumentationTestCase;
 
 import junit.framework.Assert;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import de.dala.simplenews.parser.XmlParser;
 import de.dala.simplenews.test.R;
 import de.dala.simplenews.common.Category;
+import de.dala.simplenews.common.Entry;
+import de.dala.simplenews.common.Feed;
 import de.dala.simplenews.database.DatabaseHandler;
+import de.dala.simplenews.database.EntryRow;
 import de.dala.simplenews.database.IDatabaseHandler;
 import de.dala.simplenews.utilities.PrefUtilities;
 
@@ -16,6 +23,8 @@ import de.dala.simplenews.utilities.PrefUtilities;
  * Created by Daniel on 01.08.2014.
  */
 public class DatabaseHandlerTest extends InstrumentationTestCase {
+    private static final int PAGE_SIZE = 4;
+
     private IDatabaseHandler db;
 
     @Override
@@ -58,6 +67,54 @@ public class DatabaseHandlerTest extends InstrumentationTestCase {
 
     }
 
+    public void testPagesIncludeEntriesWithoutDate(){
+        db.removeAllCategories();
+        long categoryId = db.addCategory(getCategory(), null, null);
+        Feed feed = new Feed();
+        feed.setXmlUrl("http://example.com/feed");
+        feed.setVisible(true);
+        long feedId = db.addFeed(categoryId, feed, true);
+        List<Entry> entries = new ArrayList<Entry>();
+        for (int i = 0; i < 25; i++) {
+            Entry entry = new Entry();
+            entry.setTitle("Entry " + i);
+            entry.setLink("http://example.com/" + i);
+            entry.setVisible(true);
+            // every third entry has no date, the others share their dates in pairs
+            entry.setDate(i % 3 == 0 ? null : (long) (i / 2));
+            entries.add(entry);
+        }
+        db.addEntries(categoryId, feedId, entries);
+
+        Set<Long> seenIds = new HashSet<Long>();
+        EntryRow row = new EntryRow();
+        Long lastDate = null;
+        Long lastId = null;
+        boolean undated = false;
+        int count;
+        do {
+            Cursor page = db.getEntriesPage(categoryId, true, lastDate, lastId, PAGE_SIZE);
+            try {
+                count = page.getCount();
+                while (page.moveToNext()) {
+                    row.moveTo(page);
+                    Assert.assertTrue("entry paged twice", seenIds.add(row.getId()));
+                    if (row.hasDate()) {
+                        Assert.assertFalse("dated entry after one without date", undated);
+                    } else {
+                        undated = true;
+                    }
+                    lastDate = row.hasDate() ? row.getDate() : null;
+                    lastId = row.getId();
+                }
+            } finally {
+                page.close();
+            }
+        } while (count == PAGE_SIZE);
+        Assert.assertEquals(entries.size(), seenIds.size());
+        db.removeAllCategories();
+    }
+
     private Category getCategory(){
         Category cat = new Category();
         cat.setName("Test");
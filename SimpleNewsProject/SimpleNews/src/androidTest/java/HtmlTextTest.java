@@ -0,0 +1,86 @@
+import android.test.InstrumentationTestCase;
+
+import junit.framework.Assert;
+
+import de.dala.simplenews.utilities.HtmlText;
+
+/**
+ * Conversion of feed descriptions to plain text.
+ */
+public class HtmlTextTest extends InstrumentationTestCase {
+
+    public void testNamedEntities() {
+        Assert.assertEquals("a & b <c> … ä", plain("a &amp; b &lt;c&gt; &hellip; &auml;"));
+        Assert.assertEquals("a b", plain("a&nbsp;b"));
+    }
+
+    public void testNumericEntities() {
+        Assert.assertEquals("ä €", plain("&#228; &#x20AC;"));
+        Assert.assertEquals("€", plain("&#X20ac;"));
+    }
+
+    public void testUnknownEntities() {
+        Assert.assertEquals("&foo; bar", plain("&foo; bar"));
+        Assert.assertEquals("&#; &#x; &#12a;", plain("&#; &#x; &#12a;"));
+    }
+
+    public void testBareAmpersand() {
+        Assert.assertEquals("Tom & Jerry", plain("Tom & Jerry"));
+        Assert.assertEquals("a&b", plain("a&b"));
+        Assert.assertEquals("end &", plain("end &"));
+    }
+
+    public void testSkipsScriptsAndStyles() {
+        Assert.assertEquals("abc", plain("a<script type=\"text/javascript\">var p = 1 > 0;</script>b<STYLE>p { color: red; }</STYLE>c"));
+        // an unclosed script hides the rest
+        Assert.assertEquals("a", plain("a<script>var p;"));
+    }
+
+    public void testSkipsComments() {
+        Assert.assertEquals("ab", plain("a<!-- <p>hidden</p> -->b"));
+        Assert.assertEquals("a", plain("a<!-- unclosed"));
+    }
+
+    public void testBlockElementsSeparateWords() {
+        Assert.assertEquals("one two line break", plain("<p>one</p><p>two</p>line<br/>break"));
+        Assert.assertEquals("first second", plain("<ul><li>first</li><li>second</li></ul>"));
+        Assert.assertEquals("bold", plain("<b>bo</b>ld"));
+        Assert.assertEquals("link", plain("<a href=\"http://example.com/?a>b\">link</a>"));
+    }
+
+    public void testCollapsesWhitespace() {
+        Assert.assertEquals("a b", plain("  a \n\t b  "));
+        Assert.assertEquals("", plain(" <p> </p> "));
+    }
+
+    public void testStrayLessThan() {
+        Assert.assertEquals("a < b", plain("a < b"));
+        Assert.assertEquals("if a<b then c", plain("if a<b then c"));
+        Assert.assertEquals("x <y z", plain("x <y z"));
+        Assert.assertEquals("it's a<b, 'quoted' text", plain("it's a<b, 'quoted' text"));
+        Assert.assertEquals("a<b c", plain("a<b <i>c</i>"));
+        Assert.assertEquals("end <", plain("end <"));
+    }
+
+    public void testKeepsBrackets() {
+        Assert.assertEquals("call foo() now", plain("call foo() now"));
+        Assert.assertEquals("see ()", plain("see (<a href=\"http://example.com/\"></a>)"));
+    }
+
+    public void testTruncatesAtWordBoundary() {
+        Assert.assertEquals("one two…", HtmlText.toPlainText("one two three four five", 12));
+        Assert.assertEquals("one two three four five", HtmlText.toPlainText("one two three four five", 23));
+        // without a space in the second half the word is cut
+        Assert.assertEquals("ab cdefghij…", HtmlText.toPlainText("ab cdefghijklmnop", 11));
+        // tags do not count
+        Assert.assertEquals("one…", HtmlText.toPlainText("<p>one</p><p>two</p>", 5));
+    }
+
+    public void testNull() {
+        Assert.assertNull(HtmlText.toPlainText(null, 0));
+    }
+
+    private static String plain(String html) {
+        return HtmlText.toPlainText(html, 0);
+    }
+}
@@ -0,0 +1,141 @@
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.InstrumentationTestCase;
+
+import junit.framework.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dala.simplenews.database.DatabaseHandler;
+import de.dala.simplenews.database.PersistableEntries;
+import de.dala.simplenews.database.PersistableFavoriteEntries;
+import de.dala.simplenews.database.PersistableFeeds;
+import de.dala.simplenews.database.PersistableUnreadEntries;
+import de.dala.simplenews.database.PersistableVisibleEntries;
+
+/**
+ * Makes sure the entry and feed cursors are served by indexes instead of table scans.
+ */
+public class QueryPlanTest extends InstrumentationTestCase {
+    private static final long CATEGORY_ID = 1;
+    private static final long FEED_ID = 1;
+    private static final int PAGE_SIZE = 20;
+    private static final long LAST_DATE = 1000;
+    private static final long LAST_ID = 100;
+
+    private SQLiteDatabase db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        DatabaseHandler.init(getInstrumentation().getContext(), null);
+        db = DatabaseHandler.getDbInstance();
+    }
+
+    public void testEntriesCursor() {
+        List<String> plan = explain(new PersistableEntries(CATEGORY_ID, null, null, true).getCursorQuery());
+        assertNoTableScan(plan);
+        assertNoSort(plan);
+    }
+
+    public void testFeedEntriesCursor() {
+        assertNoTableScan(explain(new PersistableEntries(CATEGORY_ID, FEED_ID, null, true).getCursorQuery()));
+    }
+
+    public void testUnreadEntriesCursor() {
+        List<String> plan = explain(new PersistableUnreadEntries(CATEGORY_ID, null, null, null).getCursorQuery());
+        assertNoTableScan(plan);
+        assertNoSort(plan);
+    }
+
+    public void testRecentEntriesCursor() {
+        assertNoTableScan(explain(new PersistableVisibleEntries(CATEGORY_ID, null, null, null).getCursorQuery()));
+    }
+
+    public void testFavoriteEntriesCursor() {
+        assertNoTableScan(explain(new PersistableFavoriteEntries(CATEGORY_ID, null, null, null).getCursorQuery()));
+    }
+
+    public void testEntriesPages() {
+        for (String query : getPageQueries(new PersistableEntries(CATEGORY_ID, null, null, true))) {
+            List<String> plan = explain(query);
+            assertNoTableScan(plan);
+            assertNoSort(plan);
+        }
+    }
+
+    public void testUnreadEntriesPages() {
+        for (String query : getPageQueries(new PersistableUnreadEntries(CATEGORY_ID, null, null, null))) {
+            List<String> plan = explain(query);
+            assertNoTableScan(plan);
+            assertNoSort(plan);
+        }
+    }
+
+    public void testRecentEntriesPages() {
+        for (String query : getPageQueries(new PersistableVisibleEntries(CATEGORY_ID, null, null, null))) {
+            assertNoTableScan(explain(query));
+        }
+    }
+
+    public void testFavoriteEntriesPages() {
+        for (String query : getPageQueries(new PersistableFavoriteEntries(CATEGORY_ID, null, null, null))) {
+            assertNoTableScan(explain(query));
+        }
+    }
+
+    public void testFeedsCursor() {
+        assertNoTableScan(explain(new PersistableFeeds(CATEGORY_ID, null, true, null).getCursorQuery()));
+    }
+
+    public void testEntryLookupByLink() {
+        assertNoTableScan(explain("SELECT " + DatabaseHandler.ENTRY_ID + " FROM " + DatabaseHandler.TABLE_ENTRY
+                + " WHERE " + DatabaseHandler.ENTRY_CATEGORY_ID + "=" + CATEGORY_ID
+                + " AND " + DatabaseHandler.ENTRY_URL + "='http://example.com'"));
+    }
+
+    /**
+     * @return the statements of the first page, of a following one and of the entries without date
+     */
+    private static List<String> getPageQueries(PersistableEntries persistence) {
+        List<String> queries = new ArrayList<String>();
+        persistence.setPage(null, null, PAGE_SIZE);
+        queries.add(persistence.getCursorQuery());
+        persistence.setPage(LAST_DATE, LAST_ID, PAGE_SIZE);
+        queries.add(persistence.getCursorQuery());
+        persistence.setPage(null, LAST_ID, PAGE_SIZE);
+        queries.add(persistence.getCursorQuery());
+        return queries;
+    }
+
+    private List<String> explain(String query) {
+        List<String> plan = new ArrayList<String>();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, null);
+        try {
+            int detail = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        } finally {
+            cursor.close();
+        }
+        Assert.assertFalse(plan.isEmpty());
+        return plan;
+    }
+
+    private static void assertNoTableScan(List<String> plan) {
+        for (String step : plan) {
+            // "SCAN TABLE x" since SQLite 3.7.4, "TABLE x" before
+            boolean scan = step.startsWith("SCAN") || step.startsWith("TABLE");
+            boolean indexed = step.contains("INDEX") || step.contains("PRIMARY KEY");
+            Assert.assertFalse("full table scan: " + plan, scan && !indexed);
+        }
+    }
+
+    private static void assertNoSort(List<String> plan) {
+        for (String step : plan) {
+            Assert.assertFalse("sorted without index: " + plan, step.contains("TEMP B-TREE"));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import junit.framework.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import androidrss.MediaThumbnail;
+import androidrss.RSSConfig;
+import androidrss.RSSFeed;
+import androidrss.RSSItem;
+import androidrss.RSSParserSPI;
+import de.dala.simplenews.test.R;
+
+/**
+ * Compares the SAX and the XmlPullParser based RSS parsers on sample feeds.
+ */
+public class RSSParserBenchmarkTest extends InstrumentationTestCase {
+    private static final String TAG = "RSSParserBenchmark";
+    private static final int[] FEEDS = {R.raw.rss_news, R.raw.rss_media};
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 30;
+
+    private RSSParserSPI saxParser;
+    private RSSParserSPI pullParser;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        saxParser = new RSSConfig(RSSConfig.Parser.SAX).newParser();
+        pullParser = new RSSConfig(RSSConfig.Parser.PULL).newParser();
+    }
+
+    public void testSameModel() throws IOException {
+        for (int feed : FEEDS) {
+            byte[] data = readRaw(feed);
+            RSSFeed sax = saxParser.parse(new ByteArrayInputStream(data));
+            RSSFeed pull = pullParser.parse(new ByteArrayInputStream(data));
+
+            Assert.assertEquals(sax.getTitle(), pull.getTitle());
+            Assert.assertEquals(sax.getLink(), pull.getLink());
+            Assert.assertEquals(sax.getLastBuildDate(), pull.getLastBuildDate());
+            Assert.assertEquals(sax.getTTL(), pull.getTTL());
+
+            List<RSSItem> saxItems = sax.getItems();
+            List<RSSItem> pullItems = pull.getItems();
+            Assert.assertFalse(saxItems.isEmpty());
+            Assert.assertEquals(saxItems.size(), pullItems.size());
+            for (int i = 0; i < saxItems.size(); i++) {
+                RSSItem saxItem = saxItems.get(i);
+                RSSItem pullItem = pullItems.get(i);
+                Assert.assertEquals(saxItem.getTitle(), pullItem.getTitle());
+                Assert.assertEquals(saxItem.getLink(), pullItem.getLink());
+                Assert.assertEquals(saxItem.getDescription(), pullItem.getDescription());
+                Assert.assertEquals(saxItem.getContent(), pullItem.getContent());
+                Assert.assertEquals(saxItem.getPubDate(), pullItem.getPubDate());
+                Assert.assertEquals(saxItem.getCategories(), pullItem.getCategories());
+                List<MediaThumbnail> saxThumbnails = saxItem.getThumbnails();
+                List<MediaThumbnail> pullThumbnails = pullItem.getThumbnails();
+                Assert.assertEquals(saxThumbnails, pullThumbnails);
+                for (int t = 0; t < saxThumbnails.size(); t++) {
+                    Assert.assertEquals(saxThumbnails.get(t).getWidth(), pullThumbnails.get(t).getWidth());
+                }
+                if (saxItem.getEnclosure() != null) {
+                    Assert.assertEquals(saxItem.getEnclosure().getUrl(), pullItem.getEnclosure().getUrl());
+                }
+            }
+        }
+    }
+
+    public void testBenchmark() throws IOException {
+        for (int feed : FEEDS) {
+            byte[] data = readRaw(feed);
+            long sax = measure(saxParser, data);
+            long pull = measure(pullParser, data);
+            Log.i(TAG, String.format("%s: SAX %d us, pull %d us per parse",
+                    getInstrumentation().getContext().getResources().getResourceEntryName(feed),
+                    sax / 1000, pull / 1000));
+        }
+    }
+
+    private long measure(RSSParserSPI parser, byte[] data) {
+        for (int i = 0; i < WARMUP; i++) {
+            parser.parse(new ByteArrayInputStream(data));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            parser.parse(new ByteArrayInputStream(data));
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private byte[] readRaw(int id) throws IOException {
+        InputStream raw = getInstrumentation().getContext().getResources().openRawResource(id);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = raw.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            raw.close();
+        }
+    }
+}
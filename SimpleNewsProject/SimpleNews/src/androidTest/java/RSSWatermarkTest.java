@@ -0,0 +1,110 @@
+import android.test.InstrumentationTestCase;
+
+import junit.framework.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import androidrss.RSSConfig;
+import androidrss.RSSFeed;
+import androidrss.RSSItem;
+import androidrss.RSSParserSPI;
+import androidrss.RSSWatermark;
+
+/**
+ * Incremental parsing up to a watermark, with both parsers.
+ */
+public class RSSWatermarkTest extends InstrumentationTestCase {
+    private static final String SORTED_FEED = feed(
+            item("http://example.com/4", "Thu, 09 Oct 2014 10:00:00 +0000"),
+            item("http://example.com/3", "Wed, 08 Oct 2014 10:00:00 +0000"),
+            item("http://example.com/2", "Tue, 07 Oct 2014 10:00:00 +0000"),
+            item("http://example.com/1", "Mon, 06 Oct 2014 10:00:00 +0000"));
+    private static final String UNSORTED_FEED = feed(
+            item("http://example.com/2", "Tue, 07 Oct 2014 10:00:00 +0000"),
+            item("http://example.com/4", "Thu, 09 Oct 2014 10:00:00 +0000"),
+            item("http://example.com/1", "Mon, 06 Oct 2014 10:00:00 +0000"),
+            item("http://example.com/3", "Wed, 08 Oct 2014 10:00:00 +0000"));
+
+    private List<RSSParserSPI> parsers;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        parsers = new ArrayList<RSSParserSPI>();
+        parsers.add(new RSSConfig(RSSConfig.Parser.SAX).newParser());
+        parsers.add(new RSSConfig(RSSConfig.Parser.PULL).newParser());
+    }
+
+    public void testStopsAtLink() throws UnsupportedEncodingException {
+        RSSWatermark watermark = new RSSWatermark("http://example.com/2", null);
+        for (RSSParserSPI parser : parsers) {
+            assertLinks(parser.parse(stream(SORTED_FEED), watermark, null), "http://example.com/4", "http://example.com/3");
+        }
+    }
+
+    public void testStopsAtOlderDate() throws UnsupportedEncodingException {
+        for (RSSParserSPI parser : parsers) {
+            List<RSSItem> items = parser.parse(stream(SORTED_FEED)).getItems();
+            // the known item is not part of the feed anymore
+            Date between = new Date((items.get(1).getPubDate().getTime() + items.get(2).getPubDate().getTime()) / 2);
+            RSSWatermark watermark = new RSSWatermark("http://example.com/removed", between);
+            assertLinks(parser.parse(stream(SORTED_FEED), watermark, null), "http://example.com/4", "http://example.com/3");
+        }
+    }
+
+    public void testNewestOfSortedFeed() throws UnsupportedEncodingException {
+        for (RSSParserSPI parser : parsers) {
+            RSSFeed feed = parser.parse(stream(SORTED_FEED));
+            RSSWatermark watermark = RSSWatermark.newest(feed.getItems());
+            Assert.assertNotNull(watermark);
+            Assert.assertEquals("http://example.com/4", watermark.getLink());
+            Assert.assertEquals(0, parser.parse(stream(SORTED_FEED), watermark, null).getItems().size());
+        }
+    }
+
+    public void testUnsortedFeed() throws UnsupportedEncodingException {
+        for (RSSParserSPI parser : parsers) {
+            // the order of the items is unknown, the feed has to be stored completely
+            Assert.assertNull(RSSWatermark.newest(parser.parse(stream(UNSORTED_FEED)).getItems()));
+        }
+    }
+
+    public void testSince() throws UnsupportedEncodingException {
+        for (RSSParserSPI parser : parsers) {
+            RSSFeed feed = parser.parse(stream(SORTED_FEED));
+            assertLinks(feed.since(new RSSWatermark("http://example.com/3", null)), "http://example.com/4");
+            Assert.assertEquals(feed.getTitle(), feed.since(new RSSWatermark("http://example.com/4", null)).getTitle());
+            // nothing known, new and known items cannot be told apart
+            Assert.assertNull(feed.since(new RSSWatermark("http://example.com/removed", null)));
+        }
+    }
+
+    private static void assertLinks(RSSFeed feed, String... links) {
+        List<RSSItem> items = feed.getItems();
+        Assert.assertEquals(links.length, items.size());
+        for (int i = 0; i < links.length; i++) {
+            Assert.assertEquals(links[i], items.get(i).getLink().toString());
+        }
+    }
+
+    private static ByteArrayInputStream stream(String feed) throws UnsupportedEncodingException {
+        return new ByteArrayInputStream(feed.getBytes("UTF-8"));
+    }
+
+    private static String feed(String... items) {
+        StringBuilder feed = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<rss version=\"2.0\"><channel><title>Test</title><link>http://example.com/</link>");
+        for (String item : items) {
+            feed.append(item);
+        }
+        return feed.append("</channel></rss>").toString();
+    }
+
+    private static String item(String link, String pubDate) {
+        return "<item><title>" + link + "</title><link>" + link + "</link><pubDate>" + pubDate + "</pubDate></item>";
+    }
+}
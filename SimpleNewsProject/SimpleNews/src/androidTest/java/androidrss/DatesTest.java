@@ -0,0 +1,103 @@
+package androidrss;
+
+import android.test.InstrumentationTestCase;
+
+import junit.framework.Assert;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Parsing of the RFC 822 and ISO 8601 dates found in feeds.
+ */
+public class DatesTest extends InstrumentationTestCase {
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    public void testRfc822() {
+        Date expected = utc(2014, Calendar.JUNE, 3, 9, 39, 21, 0);
+        Assert.assertEquals(expected, Dates.parse("Tue, 03 Jun 2014 09:39:21 GMT"));
+        Assert.assertEquals(expected, Dates.parse("Tue 03 Jun 2014 09:39:21 +0000"));
+        Assert.assertEquals(expected, Dates.parse("03 Jun 2014 09:39:21 UT"));
+        Assert.assertEquals(expected, Dates.parse("  3 jun 2014 09:39:21  "));
+        Assert.assertEquals(expected, Dates.parse("03-Jun-2014 09:39:21"));
+    }
+
+    public void testRfc822WithoutSeconds() {
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 9, 39, 0, 0), Dates.parse("Tue, 03 Jun 2014 09:39 GMT"));
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 0, 0, 0, 0), Dates.parse("03 Jun 2014"));
+    }
+
+    public void testTwoDigitYears() {
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 9, 39, 21, 0), Dates.parse("Tue, 03 Jun 14 09:39:21 GMT"));
+        Assert.assertEquals(utc(1999, Calendar.DECEMBER, 31, 23, 59, 0, 0), Dates.parse("31 Dec 99 23:59 GMT"));
+    }
+
+    public void testNamedZones() {
+        Date utc = utc(2014, Calendar.JUNE, 3, 9, 39, 21, 0);
+        Assert.assertEquals(utc, Dates.parse("Tue, 03 Jun 2014 09:39:21 Z"));
+        Assert.assertEquals(new Date(utc.getTime() + 5 * HOUR), Dates.parse("Tue, 03 Jun 2014 09:39:21 EST"));
+        Assert.assertEquals(new Date(utc.getTime() + 7 * HOUR), Dates.parse("Tue, 03 Jun 2014 09:39:21 PDT"));
+        Assert.assertEquals(new Date(utc.getTime() - 2 * HOUR), Dates.parse("Tue, 03 Jun 2014 09:39:21 CEST"));
+        // unknown zones are treated as UTC
+        Assert.assertEquals(utc, Dates.parse("Tue, 03 Jun 2014 09:39:21 XYZ"));
+    }
+
+    public void testOffsets() {
+        Date utc = utc(2014, Calendar.JUNE, 3, 9, 39, 21, 0);
+        Assert.assertEquals(new Date(utc.getTime() - 2 * HOUR), Dates.parse("Tue, 03 Jun 2014 09:39:21 +0200"));
+        Assert.assertEquals(new Date(utc.getTime() - 2 * HOUR), Dates.parse("Tue, 03 Jun 2014 09:39:21 +02:00"));
+        Assert.assertEquals(new Date(utc.getTime() + 5 * HOUR + HOUR / 2), Dates.parse("Tue, 03 Jun 2014 09:39:21 -0530"));
+        Assert.assertEquals(new Date(utc.getTime() - HOUR), Dates.parse("Tue, 03 Jun 2014 09:39:21 GMT+0100"));
+    }
+
+    public void testIso8601() {
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 9, 39, 21, 0), Dates.parse("2014-06-03T09:39:21Z"));
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 7, 39, 21, 0), Dates.parse("2014-06-03T09:39:21+02:00"));
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 7, 39, 21, 0), Dates.parse("2014-06-03T09:39:21+0200"));
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 9, 39, 0, 0), Dates.parse("2014-06-03 09:39"));
+    }
+
+    public void testIso8601FractionalSeconds() {
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 9, 39, 21, 500), Dates.parse("2014-06-03T09:39:21.5Z"));
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 9, 39, 21, 123), Dates.parse("2014-06-03T09:39:21.123456Z"));
+    }
+
+    public void testIso8601WithoutZone() {
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 9, 39, 21, 0), Dates.parse("2014-06-03T09:39:21"));
+        Assert.assertEquals(utc(2014, Calendar.JUNE, 3, 0, 0, 0, 0), Dates.parse("2014-06-03"));
+    }
+
+    public void testDayOfMonth() {
+        Assert.assertEquals(utc(2012, Calendar.FEBRUARY, 29, 0, 0, 0, 0), Dates.parse("29 Feb 2012"));
+        Assert.assertEquals(utc(2000, Calendar.FEBRUARY, 29, 0, 0, 0, 0), Dates.parse("2000-02-29"));
+        Assert.assertNull(Dates.parse("29 Feb 2014"));
+        Assert.assertNull(Dates.parse("1900-02-29"));
+        Assert.assertNull(Dates.parse("30 Feb 2012"));
+        Assert.assertNull(Dates.parse("31 Apr 2014"));
+        Assert.assertNull(Dates.parse("2014-11-31"));
+        Assert.assertNull(Dates.parse("32 Jan 2014"));
+        Assert.assertNull(Dates.parse("00 Jan 2014"));
+    }
+
+    public void testGarbage() {
+        Assert.assertNull(Dates.parse(null));
+        Assert.assertNull(Dates.parse(""));
+        Assert.assertNull(Dates.parse("   "));
+        Assert.assertNull(Dates.parse("not a date"));
+        Assert.assertNull(Dates.parse("Tue, 03 Foo 2014 09:39:21 GMT"));
+        Assert.assertNull(Dates.parse("Tue, 03 Jun 2014 25:39:21 GMT"));
+        Assert.assertNull(Dates.parse("Tue, 03 Jun 2014 09"));
+        Assert.assertNull(Dates.parse("2014-13-01"));
+        Assert.assertNull(Dates.parse("2014-06-03T"));
+        Assert.assertNull(Dates.parse("2014-06-03T09:39:21+99:00"));
+    }
+
+    private static Date utc(int year, int month, int day, int hour, int minute, int second, int millis) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute, second);
+        calendar.set(Calendar.MILLISECOND, millis);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,306 @@
+package androidrss;
+
+import android.test.InstrumentationTestCase;
+
+import junit.framework.Assert;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loading with several threads, limited per host, and stopping of the loading
+ * threads, with a reader which does not access the network.
+ */
+public class RSSLoaderTest extends InstrumentationTestCase {
+    private static final long TIMEOUT = 10;
+    private static final String BLOCKED = "http://a.example.com/blocked";
+
+    public void testFifoHostLimit() throws Exception {
+        assertHostLimit(false);
+    }
+
+    public void testPriorityHostLimit() throws Exception {
+        assertHostLimit(true);
+    }
+
+    public void testParkedByPriority() throws Exception {
+        StubReader reader = new StubReader(0, null);
+        RSSLoader loader = priority(16, 2, 1, reader);
+        Assert.assertNotNull(loader.load(BLOCKED));
+        reader.awaitBlocked();
+
+        // the second thread parks them with the host
+        loader.load("http://a.example.com/1", 1);
+        loader.load("http://a.example.com/5", 5);
+        loader.load("http://a.example.com/3", 3);
+        awaitTaken(loader);
+        reader.unblock();
+
+        takeAll(loader, 4);
+        Assert.assertEquals(Arrays.asList(BLOCKED, "http://a.example.com/5", "http://a.example.com/3",
+                "http://a.example.com/1"), reader.order());
+        // the parked ones are loaded by the thread holding the slot of the host
+        loader.stop();
+        reader.assertStopped(1);
+    }
+
+    public void testStopEndsAllThreads() throws Exception {
+        StubReader reader = new StubReader(0, new CyclicBarrier(3));
+        RSSLoader loader = fifo(16, 3, 0, reader);
+        for (int i = 0; i < 3; i++) {
+            loader.load("http://host" + i + ".example.com/");
+        }
+        // every thread has loaded one RSS feed
+        takeAll(loader, 3);
+        loader.stop();
+        reader.assertStopped(3);
+        Assert.assertNull(loader.load("http://host0.example.com/"));
+    }
+
+    public void testStopCancelsOvertakenLoads() throws Exception {
+        StubReader reader = new StubReader(0, null);
+        RecordingListener listener = new RecordingListener();
+        RSSLoader loader = priority(16, 1, 0, reader);
+        loader.load(BLOCKED, 3, listener);
+        reader.awaitBlocked();
+
+        loader.load("http://b.example.com/urgent", 8, listener);
+        loader.load("http://b.example.com/normal", 3, listener);
+        loader.load("http://b.example.com/low", 1, listener);
+        loader.stop();
+        reader.unblock();
+
+        Map<String, Future<RSSFeed>> futures = takeAll(loader, 4);
+        Assert.assertFalse(futures.get(BLOCKED).isCancelled());
+        Assert.assertFalse(futures.get("http://b.example.com/urgent").isCancelled());
+        Assert.assertTrue(futures.get("http://b.example.com/normal").isCancelled());
+        Assert.assertTrue(futures.get("http://b.example.com/low").isCancelled());
+        Assert.assertEquals(Arrays.asList(BLOCKED, "http://b.example.com/urgent"), reader.order());
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("loaded " + BLOCKED, "loaded http://b.example.com/urgent",
+                "cancelled http://b.example.com/normal", "cancelled http://b.example.com/low")), listener.events());
+        reader.assertStopped(1);
+    }
+
+    public void testStopWithFullQueue() throws Exception {
+        StubReader reader = new StubReader(0, null);
+        RSSLoader loader = fifo(2, 1, 0, reader);
+        loader.load(BLOCKED);
+        reader.awaitBlocked();
+
+        Assert.assertNotNull(loader.load("http://b.example.com/1"));
+        Assert.assertNotNull(loader.load("http://b.example.com/2"));
+        Assert.assertNull(loader.load("http://b.example.com/3"));
+        loader.stop();
+        reader.unblock();
+
+        // the pending loads are completed before the thread stops
+        takeAll(loader, 3);
+        Assert.assertEquals(Arrays.asList(BLOCKED, "http://b.example.com/1", "http://b.example.com/2"), reader.order());
+        reader.assertStopped(1);
+    }
+
+    private static void assertHostLimit(boolean prioritized) throws Exception {
+        StubReader reader = new StubReader(5, null);
+        RSSLoader loader = prioritized ? priority(64, 4, 2, reader) : fifo(64, 4, 2, reader);
+        Set<String> uris = new HashSet<String>();
+        for (int i = 0; i < 30; i++) {
+            String uri = "http://host" + (i % 3) + ".example.com/" + i;
+            uris.add(uri);
+            Assert.assertNotNull(loader.load(uri, i % 5));
+        }
+
+        Map<String, Future<RSSFeed>> futures = takeAll(loader, uris.size());
+        Assert.assertEquals(uris, futures.keySet());
+        for (Future<RSSFeed> future : futures.values()) {
+            Assert.assertNotNull(future.get());
+        }
+        Assert.assertEquals(uris.size(), reader.order().size());
+        Assert.assertEquals(uris, new HashSet<String>(reader.order()));
+        Assert.assertTrue(reader.maxPerHost() <= 2);
+
+        loader.stop();
+        reader.assertStopped(reader.threads());
+    }
+
+    /**
+     * Takes the given number of completed loads, each one exactly once.
+     */
+    private static Map<String, Future<RSSFeed>> takeAll(RSSLoader loader, int count) throws InterruptedException {
+        Map<String, Future<RSSFeed>> futures = new HashMap<String, Future<RSSFeed>>();
+        for (int i = 0; i < count; i++) {
+            Future<RSSFeed> future = loader.poll(TIMEOUT, TimeUnit.SECONDS);
+            Assert.assertNotNull(future);
+            Assert.assertTrue(future.isDone());
+            Assert.assertNull(futures.put(((RSSLoader.RSSFuture) future).uri, future));
+        }
+        Assert.assertNull(loader.poll(100, TimeUnit.MILLISECONDS));
+        return futures;
+    }
+
+    private static void awaitTaken(RSSLoader loader) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while (loader.isLoading()) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        // the last one taken is parked right after it has been dequeued
+        Thread.sleep(100);
+    }
+
+    private static RSSLoader fifo(int capacity, int threads, int threadsPerHost, final StubReader reader) {
+        return new RSSLoader(new LinkedBlockingQueue<RSSLoader.RSSFuture>(capacity), threads, threadsPerHost) {
+            @Override
+            RSSReader createReader() {
+                return reader;
+            }
+        };
+    }
+
+    private static RSSLoader priority(int capacity, int threads, int threadsPerHost, final StubReader reader) {
+        return new RSSLoader(new PriorityBlockingQueue<RSSLoader.RSSFuture>(capacity), threads, threadsPerHost) {
+            @Override
+            RSSReader createReader() {
+                return reader;
+            }
+        };
+    }
+
+    /**
+     * Records the loads and the number of concurrent loads per host. Loading
+     * {@link #BLOCKED} waits until {@link #unblock()} is called.
+     */
+    private static class StubReader extends RSSReader {
+        private final long delay;
+        private final CyclicBarrier barrier;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch unblocked = new CountDownLatch(1);
+        private final List<String> order = new ArrayList<String>();
+        private final Set<Thread> threads = new HashSet<Thread>();
+        private final Map<String, Integer> active = new HashMap<String, Integer>();
+        private int maxPerHost;
+
+        /**
+         * @param barrier awaited by every load, may be {@code null}
+         */
+        StubReader(long delay, CyclicBarrier barrier) {
+            super(null, (RSSParserSPI) null);
+            this.delay = delay;
+            this.barrier = barrier;
+        }
+
+        @Override
+        public RSSFeed load(String uri) {
+            final String host = getHost(uri);
+            synchronized (this) {
+                order.add(uri);
+                threads.add(Thread.currentThread());
+                final int loading = active.containsKey(host) ? active.get(host) + 1 : 1;
+                active.put(host, loading);
+                maxPerHost = Math.max(maxPerHost, loading);
+            }
+            try {
+                if (BLOCKED.equals(uri)) {
+                    blocked.countDown();
+                    unblocked.await(TIMEOUT, TimeUnit.SECONDS);
+                } else if (barrier != null) {
+                    barrier.await(TIMEOUT, TimeUnit.SECONDS);
+                } else if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (BrokenBarrierException e) {
+                throw new RSSFault(e);
+            } catch (TimeoutException e) {
+                throw new RSSFault(e);
+            } finally {
+                synchronized (this) {
+                    active.put(host, active.get(host) - 1);
+                }
+            }
+            return new RSSFeed();
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            Assert.assertTrue(blocked.await(TIMEOUT, TimeUnit.SECONDS));
+        }
+
+        void unblock() {
+            unblocked.countDown();
+        }
+
+        synchronized List<String> order() {
+            return new ArrayList<String>(order);
+        }
+
+        synchronized int maxPerHost() {
+            return maxPerHost;
+        }
+
+        synchronized int threads() {
+            return threads.size();
+        }
+
+        /**
+         * Asserts that the given number of threads has loaded RSS feeds and
+         * that all of them have stopped.
+         */
+        void assertStopped(int count) throws InterruptedException {
+            final List<Thread> loading;
+            synchronized (this) {
+                loading = new ArrayList<Thread>(threads);
+            }
+            Assert.assertEquals(count, loading.size());
+            for (Thread thread : loading) {
+                thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+                Assert.assertFalse(thread.isAlive());
+            }
+        }
+
+        private static String getHost(String uri) {
+            try {
+                return new URL(uri).getHost();
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    private static class RecordingListener implements RSSLoader.Listener {
+        private final Set<String> events = new HashSet<String>();
+
+        @Override
+        public synchronized void onLoaded(String uri, RSSFeed feed) {
+            events.add("loaded " + uri);
+        }
+
+        @Override
+        public synchronized void onFailed(String uri, Exception cause) {
+            events.add("failed " + uri);
+        }
+
+        @Override
+        public synchronized void onCancelled(String uri) {
+            events.add("cancelled " + uri);
+        }
+
+        synchronized Set<String> events() {
+            return new HashSet<String>(events);
+        }
+    }
+}
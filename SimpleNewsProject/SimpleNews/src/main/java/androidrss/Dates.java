@@ -16,21 +16,44 @@
 
 package androidrss;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-
 /**
- * Internal helper class for date conversions.
+ * Internal helper class for date conversions. Dates are parsed by hand without
+ * intermediate objects, so this class is thread-safe and cheap enough to be
+ * called for every item of every feed.
  *
  * @author Mr Horn
  */
 public final class Dates {
 
     /**
-     * @see <a href="http://www.ietf.org/rfc/rfc0822.txt">RFC 822</a>
+     * Returned by the internal parse methods if a date is invalid.
+     */
+    private static final long INVALID = Long.MIN_VALUE;
+
+    /**
+     * Returned by the internal read methods if no number has been read.
+     */
+    private static final long NONE = -1;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    /**
+     * Lower case prefixes of the month names in the order of the calendar.
+     */
+    private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+
+    /**
+     * Number of cached dates, must be a power of two.
+     */
+    private static final int CACHE_SIZE = 64;
+
+    /**
+     * Feeds repeat the same date string for pubDate and lastBuildDate, and
+     * aggregated feeds often publish many items at once. Entries are immutable,
+     * so concurrent readers see either a complete entry or none.
      */
-    private static final SimpleDateFormat RFC822 = new SimpleDateFormat(
-            "EEE, dd MMM yyyy HH:mm:ss Z", java.util.Locale.ENGLISH);
+    private static final CacheEntry[] CACHE = new CacheEntry[CACHE_SIZE];
 
     /* Hide constructor */
     private Dates() {
@@ -42,12 +65,439 @@ public final class Dates {
      * @throws RSSFault if the string is not a valid RFC 822 date/time
      */
     static java.util.Date parseRfc822(String date) {
-        try {
-            return RFC822.parse(date);
-        } catch (ParseException e) {
-            throw new RSSFault(e);
+        final java.util.Date result = parse(date);
+        if (result == null) {
+            throw new RSSFault("Unparseable date: \"" + date + "\"");
         }
+        return result;
     }
 
-}
+    /**
+     * Parses string as an RFC 822 or ISO 8601 (RFC 3339) date/time. Common
+     * deviations such as two-digit years, named time zones, missing seconds or
+     * a missing day of the week are accepted. Dates without a time zone are
+     * treated as UTC.
+     *
+     * @return the parsed date or {@code null} if the string is not a valid date
+     */
+    static java.util.Date parse(String date) {
+        if (date == null) {
+            return null;
+        }
+
+        final int index = date.hashCode() & (CACHE_SIZE - 1);
+        final CacheEntry cached = CACHE[index];
+        if (cached != null && cached.text.equals(date)) {
+            return new java.util.Date(cached.time);
+        }
+
+        int start = 0;
+        int end = date.length();
+        while (start < end && date.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && date.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        final long time;
+        if (end - start > 4 && isDigit(date.charAt(start)) && date.charAt(start + 4) == '-') {
+            time = parseIso8601(date, start, end);
+        } else {
+            time = parseRfc822(date, start, end);
+        }
+        if (time == INVALID) {
+            return null;
+        }
+
+        CACHE[index] = new CacheEntry(date, time);
+        return new java.util.Date(time);
+    }
+
+    /**
+     * Parses {@code [day-name[,]] day month year [hh:mm[:ss]] [zone]}.
+     */
+    private static long parseRfc822(String s, int pos, int end) {
+        // optional day of the week
+        if (pos < end && isLetter(s.charAt(pos))) {
+            pos = skipLetters(s, pos, end);
+            if (pos < end && s.charAt(pos) == ',') {
+                pos++;
+            }
+            pos = skipWhitespace(s, pos, end);
+        }
+
+        long read = readNumber(s, pos, end, 2);
+        if (read == NONE) {
+            return INVALID;
+        }
+        final int day = value(read);
+        pos = skipSeparators(s, position(read), end);
 
+        final int month = readMonth(s, pos, end);
+        if (month < 0) {
+            return INVALID;
+        }
+        pos = skipSeparators(s, skipLetters(s, pos, end), end);
+
+        read = readNumber(s, pos, end, 4);
+        if (read == NONE) {
+            return INVALID;
+        }
+        int year = value(read);
+        if (position(read) - pos <= 2) {
+            // RFC 2822 section 4.3
+            year += year < 50 ? 2000 : 1900;
+        }
+        pos = skipWhitespace(s, position(read), end);
+
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        read = readNumber(s, pos, end, 2);
+        if (read != NONE) {
+            hour = value(read);
+            pos = position(read);
+            if (pos >= end || s.charAt(pos) != ':') {
+                return INVALID;
+            }
+            read = readNumber(s, pos + 1, end, 2);
+            if (read == NONE) {
+                return INVALID;
+            }
+            minute = value(read);
+            pos = position(read);
+            if (pos < end && s.charAt(pos) == ':') {
+                read = readNumber(s, pos + 1, end, 2);
+                if (read == NONE) {
+                    return INVALID;
+                }
+                second = value(read);
+                pos = skipFraction(s, position(read), end);
+            }
+            pos = skipWhitespace(s, pos, end);
+        }
+
+        final long offset = readZone(s, pos, end);
+        if (offset == INVALID) {
+            return INVALID;
+        }
+        return toMillis(year, month, day, hour, minute, second, 0, offset);
+    }
+
+    /**
+     * Parses {@code yyyy-MM-dd[(T| )hh:mm[:ss[.fff]]][Z|+hh:mm|+hhmm|+hh]}.
+     */
+    private static long parseIso8601(String s, int pos, int end) {
+        long read = readNumber(s, pos, end, 4);
+        if (read == NONE || position(read) != pos + 4) {
+            return INVALID;
+        }
+        final int year = value(read);
+        pos = position(read);
+
+        if (pos >= end || s.charAt(pos) != '-') {
+            return INVALID;
+        }
+        read = readNumber(s, pos + 1, end, 2);
+        if (read == NONE) {
+            return INVALID;
+        }
+        final int month = value(read) - 1;
+        pos = position(read);
+
+        if (pos >= end || s.charAt(pos) != '-') {
+            return INVALID;
+        }
+        read = readNumber(s, pos + 1, end, 2);
+        if (read == NONE) {
+            return INVALID;
+        }
+        final int day = value(read);
+        pos = position(read);
+
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int millis = 0;
+        if (pos < end && (s.charAt(pos) == 'T' || s.charAt(pos) == 't' || s.charAt(pos) == ' ')) {
+            read = readNumber(s, pos + 1, end, 2);
+            if (read == NONE) {
+                return INVALID;
+            }
+            hour = value(read);
+            pos = position(read);
+            if (pos >= end || s.charAt(pos) != ':') {
+                return INVALID;
+            }
+            read = readNumber(s, pos + 1, end, 2);
+            if (read == NONE) {
+                return INVALID;
+            }
+            minute = value(read);
+            pos = position(read);
+            if (pos < end && s.charAt(pos) == ':') {
+                read = readNumber(s, pos + 1, end, 2);
+                if (read == NONE) {
+                    return INVALID;
+                }
+                second = value(read);
+                pos = position(read);
+                if (pos < end && (s.charAt(pos) == '.' || s.charAt(pos) == ',')) {
+                    final int fractionStart = pos + 1;
+                    read = readNumber(s, fractionStart, end, 3);
+                    if (read == NONE) {
+                        return INVALID;
+                    }
+                    millis = value(read);
+                    for (int digits = position(read) - fractionStart; digits < 3; digits++) {
+                        millis *= 10;
+                    }
+                    pos = skipFraction(s, position(read), end);
+                }
+            }
+        }
+
+        final long offset = readZone(s, skipWhitespace(s, pos, end), end);
+        if (offset == INVALID) {
+            return INVALID;
+        }
+        return toMillis(year, month, day, hour, minute, second, millis, offset);
+    }
+
+    /**
+     * Reads a numeric or named time zone and returns its offset from UTC in
+     * milliseconds. A missing or unknown zone is treated as UTC.
+     */
+    private static long readZone(String s, int pos, int end) {
+        if (pos >= end) {
+            return 0;
+        }
+
+        final char c = s.charAt(pos);
+        if (c == '+' || c == '-') {
+            return readOffset(s, pos, end);
+        }
+        if (!isLetter(c)) {
+            return 0;
+        }
+
+        final int zoneEnd = skipLetters(s, pos, end);
+        final int length = zoneEnd - pos;
+        long offset = 0;
+        if (length == 3) {
+            offset = namedZone(Character.toUpperCase(s.charAt(pos)),
+                    Character.toUpperCase(s.charAt(pos + 1)),
+                    Character.toUpperCase(s.charAt(pos + 2)));
+        } else if (length == 4 && s.regionMatches(true, pos, "CEST", 0, 4)) {
+            offset = 2 * 60 * MILLIS_PER_MINUTE;
+        }
+
+        // GMT+0200 and similar
+        if (zoneEnd < end && (s.charAt(zoneEnd) == '+' || s.charAt(zoneEnd) == '-')) {
+            final long additional = readOffset(s, zoneEnd, end);
+            return additional == INVALID ? offset : offset + additional;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the offset of an RFC 822 or common European three letter zone,
+     * zero for UT, GMT, UTC and unknown zones.
+     */
+    private static long namedZone(char first, char second, char third) {
+        int hours = 0;
+        if (third == 'T' && (second == 'S' || second == 'D')) {
+            final boolean daylight = second == 'D';
+            switch (first) {
+                case 'E':
+                    hours = daylight ? -4 : -5;
+                    break;
+                case 'C':
+                    hours = daylight ? -5 : -6;
+                    break;
+                case 'M':
+                    hours = daylight ? -6 : -7;
+                    break;
+                case 'P':
+                    hours = daylight ? -7 : -8;
+                    break;
+            }
+        } else if (first == 'C' && second == 'E' && third == 'T') {
+            hours = 1;
+        } else if (first == 'B' && second == 'S' && third == 'T') {
+            hours = 1;
+        }
+        return hours * 60 * MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * Reads {@code +hhmm}, {@code +hh:mm} or {@code +hh}.
+     */
+    private static long readOffset(String s, int pos, int end) {
+        final int sign = s.charAt(pos) == '-' ? -1 : 1;
+        long read = readNumber(s, pos + 1, end, 4);
+        if (read == NONE) {
+            return INVALID;
+        }
+        final int digits = position(read) - pos - 1;
+        int hours;
+        int minutes = 0;
+        if (digits > 2) {
+            hours = value(read) / 100;
+            minutes = value(read) % 100;
+        } else {
+            hours = value(read);
+            pos = position(read);
+            if (pos < end && s.charAt(pos) == ':') {
+                read = readNumber(s, pos + 1, end, 2);
+                if (read == NONE) {
+                    return INVALID;
+                }
+                minutes = value(read);
+            }
+        }
+        if (hours > 23 || minutes > 59) {
+            return INVALID;
+        }
+        return sign * (hours * 60 + minutes) * MILLIS_PER_MINUTE;
+    }
+
+    private static long toMillis(int year, int month, int day, int hour, int minute,
+                                 int second, int millis, long offset) {
+        if (month < 0 || month > 11 || day < 1 || day > daysOfMonth(year, month) || hour > 24
+                || minute > 59 || second > 60) {
+            return INVALID;
+        }
+        if (second == 60) {
+            // leap second
+            second = 59;
+        }
+        final long days = daysFromCivil(year, month + 1, day);
+        return days * MILLIS_PER_DAY
+                + ((hour * 60L + minute) * 60L + second) * 1000L + millis
+                - offset;
+    }
+
+    /**
+     * Returns the length of the zero-based month.
+     */
+    private static int daysOfMonth(int year, int month) {
+        if (month == 1) {
+            final boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return month == 3 || month == 5 || month == 8 || month == 10 ? 30 : 31;
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 of a proleptic Gregorian date.
+     *
+     * @see <a href="http://howardhinnant.github.io/date_algorithms.html">date algorithms</a>
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        final int era = (year >= 0 ? year : year - 399) / 400;
+        final int yearOfEra = year - era * 400;
+        final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * Returns the zero-based month of the name at the given position or
+     * {@code -1}.
+     */
+    private static int readMonth(String s, int pos, int end) {
+        if (end - pos < 3) {
+            return -1;
+        }
+        for (int month = 0; month < 12; month++) {
+            if (s.regionMatches(true, pos, MONTHS, month * 3, 3)) {
+                return month;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads up to {@code maxDigits} decimal digits.
+     *
+     * @return the value in the upper and the position after the last digit in
+     * the lower 32 bits, or {@link #NONE} if there is no digit
+     */
+    private static long readNumber(String s, int pos, int end, int maxDigits) {
+        final int limit = Math.min(end, pos + maxDigits);
+        int value = 0;
+        int i = pos;
+        while (i < limit && isDigit(s.charAt(i))) {
+            value = value * 10 + (s.charAt(i) - '0');
+            i++;
+        }
+        if (i == pos) {
+            return NONE;
+        }
+        return ((long) value << 32) | i;
+    }
+
+    private static int value(long read) {
+        return (int) (read >>> 32);
+    }
+
+    private static int position(long read) {
+        return (int) read;
+    }
+
+    private static int skipFraction(String s, int pos, int end) {
+        if (pos < end && s.charAt(pos) == '.') {
+            pos++;
+        }
+        while (pos < end && isDigit(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipLetters(String s, int pos, int end) {
+        while (pos < end && isLetter(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipWhitespace(String s, int pos, int end) {
+        while (pos < end && s.charAt(pos) <= ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Skips whitespace and the dashes of dates like {@code 03-Jun-2014}.
+     */
+    private static int skipSeparators(String s, int pos, int end) {
+        while (pos < end && (s.charAt(pos) <= ' ' || s.charAt(pos) == '-')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static final class CacheEntry {
+        final String text;
+        final long time;
+
+        CacheEntry(String text, long time) {
+            this.text = text;
+            this.time = time;
+        }
+    }
+
+}
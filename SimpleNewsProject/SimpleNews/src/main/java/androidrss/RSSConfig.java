@@ -25,6 +25,20 @@ package androidrss;
  */
 public final class RSSConfig {
 
+    /**
+     * Available RSS parser SPI implementations.
+     */
+    public enum Parser {
+        /**
+         * {@link RSSParser} based on SAX.
+         */
+        SAX,
+        /**
+         * {@link RSSPullParser} based on XmlPullParser.
+         */
+        PULL
+    }
+
     /**
      * Average number of RSS item &lt;category&gt; elements which serves as the
      * initial capacity of the List implementation.
@@ -37,6 +51,11 @@ public final class RSSConfig {
      */
     final byte thumbnailAvg;
 
+    /**
+     * RSS parser SPI implementation created by {@link #newParser()}.
+     */
+    final Parser parser;
+
     /**
      * Instantiate an RSS configuration with the specified parameters.
      *
@@ -44,18 +63,51 @@ public final class RSSConfig {
      *                     a typical RSS feed
      * @param thumbnailAvg average number of RSS item &lt;metia:thumbnail&gt;
      *                     elements in a typical RSS feed
+     * @param parser       RSS parser SPI implementation to use
      */
-    public RSSConfig(byte categoryAvg, byte thumbnailAvg) {
+    public RSSConfig(byte categoryAvg, byte thumbnailAvg, Parser parser) {
         this.categoryAvg = categoryAvg;
         this.thumbnailAvg = thumbnailAvg;
+        this.parser = parser;
+    }
+
+    /**
+     * Instantiate an RSS configuration with the specified parameters which uses
+     * the SAX parser.
+     *
+     * @param categoryAvg  average number of RSS item &lt;category&gt; elements in
+     *                     a typical RSS feed
+     * @param thumbnailAvg average number of RSS item &lt;metia:thumbnail&gt;
+     *                     elements in a typical RSS feed
+     */
+    public RSSConfig(byte categoryAvg, byte thumbnailAvg) {
+        this(categoryAvg, thumbnailAvg, Parser.SAX);
+    }
+
+    /**
+     * Instantiate an RSS configuration with default values and the specified
+     * parser.
+     */
+    public RSSConfig(Parser parser) {
+        this((byte) 3, (byte) 2, parser);
     }
 
     /**
      * Instantiate an RSS configuration with default values.
      */
     public RSSConfig() {
-        this.categoryAvg = 3;
-        this.thumbnailAvg = 2;
+        this(Parser.SAX);
+    }
+
+    /**
+     * Creates the thread-safe RSS parser SPI implementation selected by this
+     * configuration.
+     */
+    public RSSParserSPI newParser() {
+        if (parser == Parser.PULL) {
+            return new RSSPullParser(this);
+        }
+        return new RSSParser(this);
     }
 
 }
@@ -43,6 +43,32 @@ public class RSSFeed extends RSSBase {
         items.add(item);
     }
 
+    /**
+     * Returns a feed with the channel data of this one and the items before
+     * the first one which is known by the watermark, like an incremental parse
+     * of the same document. Returns {@code null} if no item is known, then it
+     * cannot be told which items are new.
+     */
+    public RSSFeed since(RSSWatermark watermark) {
+        final RSSFeed feed = new RSSFeed();
+        feed.setTitle(getTitle());
+        feed.setDescription(getDescription());
+        feed.setLink(getLink());
+        feed.setPubDate(getPubDate());
+        for (String category : getCategories()) {
+            feed.addCategory(category);
+        }
+        feed.setLastBuildDate(lastBuildDate);
+        feed.setTTL(ttl);
+        for (RSSItem item : items) {
+            if (watermark.isReached(item)) {
+                return feed;
+            }
+            feed.addItem(item);
+        }
+        return null;
+    }
+
     public java.util.Date getLastBuildDate() {
         return lastBuildDate;
     }
@@ -41,6 +41,14 @@ public class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
      * Use configuration to optimize initial capacities of collections
      */
     private final RSSConfig config;
+    /**
+     * Newest known item, parsing stops when it is reached. May be {@code null}.
+     */
+    private final RSSWatermark watermark;
+    /**
+     * Receives the parsed items instead of {@link #feed}. May be {@code null}.
+     */
+    private final RSSItemConsumer consumer;
     /**
      * Reference is {@code null} unless started to parse &lt;item&gt; element.
      * Visibility must be package-private to ensure efficiency of inner classes.
@@ -116,7 +124,11 @@ public class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
     private final Setter SET_PUBDATE = new ContentSetter() {
         @Override
         public void set(String pubDate) {
-            final java.util.Date date = Dates.parseRfc822(pubDate);
+            final java.util.Date date = Dates.parse(pubDate);
+            if (date == null) {
+                // Ignore invalid dates instead of failing the whole feed.
+                return;
+            }
             if (item == null) {
                 feed.setPubDate(date);
             } else {
@@ -130,7 +142,11 @@ public class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
     private final Setter SET_LAST_BUILE_DATE = new ContentSetter() {
         @Override
         public void set(String pubDate) {
-            final java.util.Date date = Dates.parseRfc822(pubDate);
+            final java.util.Date date = Dates.parse(pubDate);
+            if (date == null) {
+                // Ignore invalid dates instead of failing the whole feed.
+                return;
+            }
             if (item == null) {
                 feed.setLastBuildDate(date);
             } else {
@@ -248,7 +264,20 @@ public class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
      * @param config configuration for the initial capacities of collections
      */
     public RSSHandler(RSSConfig config) {
+        this(config, null, null);
+    }
+
+    /**
+     * Instantiate a SAX handler which parses the items up to a watermark.
+     *
+     * @param config    configuration for the initial capacities of collections
+     * @param watermark newest known item, may be {@code null}
+     * @param consumer  receives the parsed items, may be {@code null}
+     */
+    public RSSHandler(RSSConfig config, RSSWatermark watermark, RSSItemConsumer consumer) {
         this.config = config;
+        this.watermark = watermark;
+        this.consumer = consumer;
 
         // initialize dispatchers to manage the state of the SAX handler
         setters = new java.util.HashMap<String, Setter>(/* 2^3 */16);
@@ -292,8 +321,12 @@ public class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
         }
     }
 
+    /**
+     * @throws WatermarkReached if the item which just ended is already known
+     */
     @Override
-    public void endElement(String nsURI, String localName, String qname) {
+    public void endElement(String nsURI, String localName, String qname)
+            throws org.xml.sax.SAXException {
         if (isBuffering()) {
             // set field of an RSS feed or RSS item
             ((ContentSetter) setter).set(buffer.toString());
@@ -301,7 +334,15 @@ public class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
             // clear buffer
             buffer = null;
         } else if (RSS_ITEM.equals(qname)) {
-            feed.addItem(item);
+            if (watermark != null && watermark.isReached(item)) {
+                item = null;
+                throw new WatermarkReached();
+            }
+            if (consumer == null) {
+                feed.addItem(item);
+            } else {
+                consumer.consume(item);
+            }
 
             // (re)enter <channel> scope
             item = null;
@@ -326,6 +367,23 @@ public class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
         return buffer != null && setter != null;
     }
 
+    /**
+     * Signals that the rest of the document contains known items only. The
+     * feed is complete when it is thrown.
+     */
+    static final class WatermarkReached extends org.xml.sax.SAXException {
+
+        /**
+         * Unsupported serialization
+         */
+        private static final long serialVersionUID = 1L;
+
+        WatermarkReached() {
+            super("watermark reached");
+        }
+
+    }
+
     /**
      * Interface to store information about RSS elements.
      */
@@ -15,7 +15,15 @@
  */
 package androidrss;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -33,10 +41,17 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <li>{@link #fifo(int)}</li>
  * <li>{@link #priority()}</li>
  * <li>{@link #priority(int)}</li>
+ * <li>{@link #fifo(int, int, int)}</li>
+ * <li>{@link #priority(int, int, int)}</li>
  * </ul>
+ * The last two load several RSS feeds at the same time, but no more than a
+ * given number from the same host.
  * <p/>
  * Completed RSS feed loads can be retrieved with {@link androidrss.RSSLoader#take()},
  * {@link androidrss.RSSLoader#poll()} or {@link androidrss.RSSLoader#poll(long, java.util.concurrent.TimeUnit)}.
+ * Every scheduled RSS feed is retrieved exactly once, whether it has been loaded,
+ * has failed or has been cancelled. Without any blocked thread, a {@link Listener}
+ * passed to {@link #load(String, int, Listener)} is informed instead.
  * <p/>
  * <p>
  * <b>Usage Example</b>
@@ -77,7 +92,7 @@ public class RSSLoader {
     /**
      * Internal sentinel to stop the thread that is loading RSS feeds.
      */
-    private final static RSSFuture SENTINEL = new RSSFuture(null, /* priority */7);
+    private final static RSSFuture SENTINEL = new RSSFuture(null, /* priority */7, null, null);
     /**
      * Arrange incoming load requests on this queue.
      */
@@ -87,9 +102,18 @@ public class RSSLoader {
      */
     private final BlockingQueue<RSSFuture> out;
     /**
-     * Flag changes are visible after operations on {@link #in} queue.
+     * Set once by {@link #stop()}, read by the loading threads.
      */
-    private boolean stopped;
+    private volatile boolean stopped;
+    /**
+     * Maximum number of RSS feeds loaded from the same host at the same time,
+     * zero for no limit.
+     */
+    private final int threadsPerHost;
+    /**
+     * Hosts with RSS feeds being loaded, guarded by itself.
+     */
+    private final Map<String, Host> hosts = new HashMap<String, Host>();
 
     /**
      * Instantiate an object which can load RSS feeds asynchronously. The provided
@@ -99,11 +123,36 @@ public class RSSLoader {
      * @see java.util.concurrent.PriorityBlockingQueue
      */
     RSSLoader(BlockingQueue<RSSFuture> in) {
+        this(in, 1, 0);
+    }
+
+    /**
+     * Instantiate an object which loads up to {@code threads} RSS feeds at the
+     * same time.
+     *
+     * @param threadsPerHost maximum number of RSS feeds loaded from the same host
+     *                       at the same time, zero for no limit
+     */
+    RSSLoader(BlockingQueue<RSSFuture> in, int threads, int threadsPerHost) {
+        if (threads < 1 || threadsPerHost < 0) {
+            throw new IllegalArgumentException("Invalid number of threads.");
+        }
         this.in = in;
         this.out = new LinkedBlockingQueue<RSSFuture>();
+        this.threadsPerHost = threadsPerHost;
 
-        // start separate thread for loading of RSS feeds
-        new Thread(new Loader(new RSSReader()), DEFAULT_THREAD_NAME).start();
+        // start separate threads for loading of RSS feeds
+        for (int i = 0; i < threads; i++) {
+            final String name = threads == 1 ? DEFAULT_THREAD_NAME : DEFAULT_THREAD_NAME + " " + (i + 1);
+            new Thread(new Loader(createReader()), name).start();
+        }
+    }
+
+    /**
+     * Creates the reader used by one of the loading threads.
+     */
+    RSSReader createReader() {
+        return new RSSReader();
     }
 
     /**
@@ -142,6 +191,32 @@ public class RSSLoader {
         return new RSSLoader(new PriorityBlockingQueue<RSSFuture>(capacity));
     }
 
+    /**
+     * Create an object which can load RSS feeds asynchronously in FIFO order
+     * with several threads.
+     *
+     * @param capacity       expected number of URIs to be loaded at a given time
+     * @param threads        maximum number of RSS feeds loaded at the same time
+     * @param threadsPerHost maximum number of RSS feeds loaded from the same host
+     *                       at the same time, zero for no limit
+     */
+    public static RSSLoader fifo(int capacity, int threads, int threadsPerHost) {
+        return new RSSLoader(new LinkedBlockingQueue<RSSFuture>(capacity), threads, threadsPerHost);
+    }
+
+    /**
+     * Create an object which can load RSS feeds asynchronously based on priority
+     * with several threads.
+     *
+     * @param capacity       expected number of URIs to be loaded at a given time
+     * @param threads        maximum number of RSS feeds loaded at the same time
+     * @param threadsPerHost maximum number of RSS feeds loaded from the same host
+     *                       at the same time, zero for no limit
+     */
+    public static RSSLoader priority(int capacity, int threads, int threadsPerHost) {
+        return new RSSLoader(new PriorityBlockingQueue<RSSFuture>(capacity), threads, threadsPerHost);
+    }
+
     /**
      * Returns {@code true} if RSS feeds are currently being loaded, {@code false}
      * otherwise.
@@ -155,14 +230,14 @@ public class RSSLoader {
      * Stop thread after finishing loading pending RSS feed URIs. If this loader
      * has been constructed with {@link #priority()} or {@link #priority(int)},
      * only RSS feed loads with priority strictly greater than seven (7) are going
-     * to be completed.
+     * to be completed, the pending ones with a lower priority are cancelled.
      * <p/>
      * Subsequent invocations of {@link #load(String)} and
      * {@link #load(String, int)} return {@code null}.
      */
     public void stop() {
-        // flag writings happen-before enqueue
         stopped = true;
+        // a full queue has no waiting thread, the threads stop once it is empty
         in.offer(SENTINEL);
     }
 
@@ -206,6 +281,22 @@ public class RSSLoader {
      * {@code null} if scheduling failed
      */
     public Future<RSSFeed> load(String uri, int priority) {
+        return load(uri, priority, null);
+    }
+
+    /**
+     * Loads the specified RSS feed URI asynchronously like {@link #load(String, int)}
+     * and informs the listener about the outcome. The listener is called on the
+     * loading thread, or on the cancelling thread if the load is cancelled. It
+     * is not called if {@code null} is returned.
+     *
+     * @param uri      RSS feed URI to be loaded
+     * @param priority larger integer gives higher priority
+     * @param listener informed once the load has completed, may be {@code null}
+     * @return Future representing the RSS feed scheduled for loading,
+     * {@code null} if scheduling failed
+     */
+    public Future<RSSFeed> load(String uri, int priority, Listener listener) {
         if (uri == null) {
             throw new IllegalArgumentException("RSS feed URI must not be null.");
         }
@@ -216,10 +307,12 @@ public class RSSLoader {
         }
 
         // flag readings happen-after enqueue
-        final RSSFuture future = new RSSFuture(uri, priority);
+        final RSSFuture future = new RSSFuture(uri, priority, listener, out);
         final boolean ok = in.offer(future);
 
         if (!ok || stopped) {
+            // never completes, as far as the caller is concerned
+            future.status.set(RSSFuture.CANCELLED);
             return null;
         }
 
@@ -265,6 +358,22 @@ public class RSSLoader {
         return out.poll(timeout, unit);
     }
 
+    /**
+     * Informed once about the outcome of loading an RSS feed.
+     */
+    public interface Listener {
+
+        void onLoaded(String uri, RSSFeed feed);
+
+        /**
+         * @param cause usually an {@link RSSException} or {@link RSSFault}
+         */
+        void onFailed(String uri, Exception cause);
+
+        void onCancelled(String uri);
+
+    }
+
     /**
      * Offer callers control over the asynchronous loading of an RSS feed.
      */
@@ -286,21 +395,49 @@ public class RSSLoader {
          */
         final int priority;
 
+        /**
+         * Informed about the outcome, may be {@code null}
+         */
+        final Listener listener;
+
+        /**
+         * Receives this future once it is done
+         */
+        final BlockingQueue<RSSFuture> completed;
+
         AtomicInteger status;
 
         boolean waiting;
         RSSFeed feed;
         Exception cause;
 
-        RSSFuture(String uri, int priority) {
+        RSSFuture(String uri, int priority, Listener listener, BlockingQueue<RSSFuture> completed) {
             this.uri = uri;
             this.priority = priority;
+            this.listener = listener;
+            this.completed = completed;
             status = new AtomicInteger(READY);
         }
 
         @Override
         public boolean cancel(boolean mayInterruptIfRunning) {
-            return isCancelled() || status.compareAndSet(READY, CANCELLED);
+            if (isCancelled()) {
+                return true;
+            }
+            if (!status.compareAndSet(READY, CANCELLED)) {
+                return false;
+            }
+            synchronized (this) {
+                if (waiting) {
+                    waiting = false;
+                    notifyAll();
+                }
+            }
+            if (listener != null) {
+                listener.onCancelled(uri);
+            }
+            completed.add(this);
+            return true;
         }
 
         @Override
@@ -315,7 +452,7 @@ public class RSSLoader {
 
         @Override
         public synchronized RSSFeed get() throws InterruptedException, ExecutionException {
-            if (feed == null && cause == null) {
+            if (feed == null && cause == null && !isCancelled()) {
                 try {
                     waiting = true;
 
@@ -328,18 +465,14 @@ public class RSSLoader {
                 }
             }
 
-            if (cause != null) {
-                throw new ExecutionException(cause);
-            }
-
-            return feed;
+            return result();
         }
 
         @Override
         public synchronized RSSFeed get(long timeout, TimeUnit unit)
                 throws InterruptedException, ExecutionException, TimeoutException {
 
-            if (feed == null && cause == null) {
+            if (feed == null && cause == null && !isCancelled()) {
                 try {
                     waiting = true;
 
@@ -360,6 +493,14 @@ public class RSSLoader {
                 }
             }
 
+            return result();
+        }
+
+        private RSSFeed result() throws ExecutionException {
+            if (isCancelled()) {
+                throw new CancellationException("RSS feed loading cancelled");
+            }
+
             if (cause != null) {
                 throw new ExecutionException(cause);
             }
@@ -367,6 +508,26 @@ public class RSSLoader {
             return feed;
         }
 
+        /**
+         * Sets the outcome of a load and hands this future over to the listener
+         * and the queue of completed loads.
+         */
+        void complete(RSSFeed feed, Exception cause) {
+            set(feed, cause);
+
+            // RSSFuture::isDone() returns true even if an error occurred
+            status.compareAndSet(LOADING, LOADED);
+
+            if (listener != null) {
+                if (cause != null) {
+                    listener.onFailed(uri, cause);
+                } else {
+                    listener.onLoaded(uri, feed);
+                }
+            }
+            completed.add(this);
+        }
+
         synchronized void set(RSSFeed feed, Exception cause) {
             this.feed = feed;
             this.cause = cause;
@@ -397,44 +558,139 @@ public class RSSLoader {
 
         /**
          * Keep on loading RSS feeds by dequeuing incoming tasks until the sentinel
-         * is encountered.
+         * is encountered, or until the queue is empty after {@link #stop()}.
          */
         @Override
         public void run() {
             try {
                 RSSFuture future;
-                RSSFeed feed;
-                while ((future = in.take()) != SENTINEL) {
-
-                    if (future.status.compareAndSet(RSSFuture.READY, RSSFuture.LOADING)) {
-                        try {
-                            // perform loading outside of locked region
-                            feed = reader.load(future.uri);
-
-                            // set successfully loaded RSS feed
-                            future.set(feed, /* error */null);
-
-                            // enable caller to consume the loaded RSS feed
-                            out.add(future);
-                        } catch (RSSException e) {
-                            // throw ExecutionException when calling RSSFuture::get()
-                            future.set(/* feed */null, e);
-                        } catch (RSSFault e) {
-                            // throw ExecutionException when calling RSSFuture::get()
-                            future.set(/* feed */null, e);
-                        } finally {
-                            // RSSFuture::isDone() returns true even if an error occurred
-                            future.status.compareAndSet(RSSFuture.LOADING, RSSFuture.LOADED);
-                        }
+                while ((future = next()) != SENTINEL) {
+                    final String host = getHost(future.uri);
+                    if (!acquire(host, future)) {
+                        // loaded by the thread which frees a slot of the host
+                        continue;
+                    }
+                    while (future != null) {
+                        load(future);
+                        future = release(host);
                     }
+                }
 
+                // the sentinel may have overtaken loads with a lower priority
+                RSSFuture pending;
+                while ((pending = in.poll()) != null) {
+                    if (pending != SENTINEL) {
+                        pending.cancel(false);
+                    }
                 }
+
+                // let the other threads stop as well
+                in.offer(SENTINEL);
             } catch (InterruptedException e) {
                 // Restore the interrupted status
                 Thread.currentThread().interrupt();
             }
         }
 
+        /**
+         * Returns the next RSS feed to load, or the sentinel once the loader
+         * has been stopped and no RSS feed is pending.
+         */
+        private RSSFuture next() throws InterruptedException {
+            if (!stopped) {
+                return in.take();
+            }
+            final RSSFuture future = in.poll();
+            return future != null ? future : SENTINEL;
+        }
+
+        private void load(RSSFuture future) {
+            if (future.status.compareAndSet(RSSFuture.READY, RSSFuture.LOADING)) {
+                RSSFeed feed = null;
+                Exception cause = null;
+                try {
+                    // perform loading outside of locked region
+                    feed = reader.load(future.uri);
+                } catch (RSSException e) {
+                    // throw ExecutionException when calling RSSFuture::get()
+                    cause = e;
+                } catch (RSSFault e) {
+                    // throw ExecutionException when calling RSSFuture::get()
+                    cause = e;
+                } catch (RuntimeException e) {
+                    // every load has to complete, even with an unexpected error
+                    cause = e;
+                }
+
+                // enable caller to consume the loaded RSS feed or the error
+                future.complete(feed, cause);
+            }
+        }
+
+    }
+
+    /**
+     * Takes a slot of the host for the given RSS feed, or parks the feed with
+     * the host if all of its slots are taken.
+     *
+     * @return {@code true} if the RSS feed can be loaded now
+     */
+    private boolean acquire(String host, RSSFuture future) {
+        synchronized (hosts) {
+            Host state = hosts.get(host);
+            if (state == null) {
+                state = new Host(in instanceof PriorityBlockingQueue);
+                hosts.put(host, state);
+            }
+            if (threadsPerHost > 0 && state.active >= threadsPerHost) {
+                state.parked.add(future);
+                return false;
+            }
+            state.active++;
+            return true;
+        }
+    }
+
+    /**
+     * Hands the slot of a loaded RSS feed over to the next parked feed of the
+     * same host, or frees it.
+     *
+     * @return the RSS feed to be loaded next with the slot, {@code null} if the
+     * slot has been freed
+     */
+    private RSSFuture release(String host) {
+        synchronized (hosts) {
+            final Host state = hosts.get(host);
+            final RSSFuture next = state.parked.poll();
+            if (next != null) {
+                return next;
+            }
+            if (--state.active == 0) {
+                hosts.remove(host);
+            }
+            return null;
+        }
+    }
+
+    private static String getHost(String uri) {
+        try {
+            final String host = new URL(uri).getHost();
+            return host != null ? host.toLowerCase() : uri;
+        } catch (MalformedURLException e) {
+            return uri;
+        }
+    }
+
+    /**
+     * RSS feeds loading from one host and the ones waiting for a free slot.
+     */
+    private static class Host {
+        int active;
+        final Queue<RSSFuture> parked;
+
+        Host(boolean prioritized) {
+            parked = prioritized ? new PriorityQueue<RSSFuture>() : new LinkedList<RSSFuture>();
+        }
     }
 
 }
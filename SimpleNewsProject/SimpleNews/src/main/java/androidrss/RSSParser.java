@@ -21,8 +21,6 @@ import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -51,6 +49,21 @@ public class RSSParser implements RSSParserSPI {
      */
     @Override
     public RSSFeed parse(InputStream feed) {
+        return parse(feed, null, null);
+    }
+
+    /**
+     * Parses input stream as RSS feed up to the watermark. It is the
+     * responsibility of the caller to close the RSS feed input stream.
+     *
+     * @param feed      RSS 2.0 feed input stream
+     * @param watermark newest known item, {@code null} to parse all items
+     * @param consumer  receives the new items, may be {@code null}
+     * @return in-memory representation of RSS feed
+     * @throws RSSFault if an unrecoverable parse error occurs
+     */
+    @Override
+    public RSSFeed parse(InputStream feed, RSSWatermark watermark, RSSItemConsumer consumer) {
         try {
             // Since SAXParserFactory implementations are not guaranteed to be
             // thread-safe, a new local object is instantiated.
@@ -62,11 +75,7 @@ public class RSSParser implements RSSParserSPI {
 
             final SAXParser parser = factory.newSAXParser();
 
-            Reader isr = new InputStreamReader(feed);
-            InputSource is = new InputSource();
-            is.setCharacterStream(isr);
-
-            return parse(parser, feed);
+            return parse(parser, feed, new RSSHandler(config, watermark, consumer));
         } catch (ParserConfigurationException e) {
             throw new RSSFault(e);
         } catch (SAXException e) {
@@ -82,7 +91,7 @@ public class RSSParser implements RSSParserSPI {
      * @return in-memory representation of an RSS feed
      * @throws IllegalArgumentException if either argument is {@code null}
      */
-    private RSSFeed parse(SAXParser parser, InputStream feed)
+    private RSSFeed parse(SAXParser parser, InputStream feed, RSSHandler handler)
             throws SAXException, IOException {
         if (parser == null) {
             throw new IllegalArgumentException("RSS parser must not be null.");
@@ -93,11 +102,12 @@ public class RSSParser implements RSSParserSPI {
         // SAX automatically detects the correct character encoding from the stream
         // See also http://www.w3.org/TR/REC-xml/#sec-guessing
         final InputSource source = new InputSource(feed);
-        Reader isr = new InputStreamReader(feed);
-        source.setCharacterStream(isr);
-        final RSSHandler handler = new RSSHandler(config);
 
-        parser.parse(source, handler);
+        try {
+            parser.parse(source, handler);
+        } catch (RSSHandler.WatermarkReached e) {
+            // the remaining items are known, leave the stream unread
+        }
 
         return handler.feed();
     }
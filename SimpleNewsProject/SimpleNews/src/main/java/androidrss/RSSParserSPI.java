@@ -33,5 +33,21 @@ public interface RSSParserSPI {
      */
     RSSFeed parse(java.io.InputStream feed);
 
+    /**
+     * Parses an input stream as an RSS feed until an already known item is
+     * reached. Items are expected newest first, so the rest of the stream is
+     * not read anymore once an item reaches the watermark. It is the
+     * responsibility of the caller to close the specified RSS feed input stream.
+     *
+     * @param feed      RSS 2.0 feed input stream
+     * @param watermark newest known item, {@code null} to parse all items
+     * @param consumer  receives the new items as soon as they are parsed, if
+     *                  {@code null} they are added to the returned feed
+     * @return in-memory representation of the RSS channel, with the new items
+     * only if there is no consumer
+     * @throws RSSFault if an unrecoverable parse error occurs
+     */
+    RSSFeed parse(java.io.InputStream feed, RSSWatermark watermark, RSSItemConsumer consumer);
+
 }
 
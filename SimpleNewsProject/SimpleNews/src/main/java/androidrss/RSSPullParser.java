@@ -0,0 +1,204 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidrss;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Thread-safe RSS parser SPI implementation based on Android's native
+ * {@link XmlPullParser}. Parse events are replayed on an {@link RSSHandler},
+ * so the resulting {@link RSSFeed} is identical to the one of {@link RSSParser}
+ * without the cost of setting up a SAX parser for every feed.
+ */
+public class RSSPullParser implements RSSParserSPI {
+
+    private final RSSConfig config;
+
+    public RSSPullParser(RSSConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Parses input stream as RSS feed. It is the responsibility of the caller to
+     * close the RSS feed input stream.
+     *
+     * @param feed RSS 2.0 feed input stream
+     * @return in-memory representation of RSS feed
+     * @throws RSSFault if an unrecoverable parse error occurs
+     */
+    @Override
+    public RSSFeed parse(InputStream feed) {
+        return parse(feed, null, null);
+    }
+
+    /**
+     * Parses input stream as RSS feed up to the watermark. It is the
+     * responsibility of the caller to close the RSS feed input stream.
+     *
+     * @param feed      RSS 2.0 feed input stream
+     * @param watermark newest known item, {@code null} to parse all items
+     * @param consumer  receives the new items, may be {@code null}
+     * @return in-memory representation of RSS feed
+     * @throws RSSFault if an unrecoverable parse error occurs
+     */
+    @Override
+    public RSSFeed parse(InputStream feed, RSSWatermark watermark, RSSItemConsumer consumer) {
+        if (feed == null) {
+            throw new IllegalArgumentException("RSS feed must not be null.");
+        }
+
+        try {
+            final XmlPullParser parser = android.util.Xml.newPullParser();
+            // element names such as media:thumbnail are matched by their qualified name
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+
+            // A null encoding lets the parser detect it from the stream
+            // See also http://www.w3.org/TR/REC-xml/#sec-guessing
+            parser.setInput(feed, null);
+
+            return parse(parser, new RSSHandler(config, watermark, consumer));
+        } catch (XmlPullParserException e) {
+            throw new RSSFault(e);
+        } catch (IOException e) {
+            throw new RSSFault(e);
+        }
+    }
+
+    /**
+     * Dispatches the pull events of the document to an {@link RSSHandler} until
+     * the end of the document or the watermark of the handler.
+     */
+    private RSSFeed parse(XmlPullParser parser, RSSHandler handler) throws XmlPullParserException, IOException {
+        final Attributes attributes = new Attributes(parser);
+        final int[] holder = new int[2];
+
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            switch (eventType) {
+                case XmlPullParser.START_TAG:
+                    handler.startElement(null, null, parser.getName(), attributes);
+                    break;
+                case XmlPullParser.END_TAG:
+                    try {
+                        handler.endElement(null, null, parser.getName());
+                    } catch (RSSHandler.WatermarkReached e) {
+                        // the remaining items are known, leave the stream unread
+                        return handler.feed();
+                    } catch (SAXException e) {
+                        throw new RSSFault(e);
+                    }
+                    break;
+                case XmlPullParser.TEXT:
+                    if (handler.isBuffering()) {
+                        final char[] text = parser.getTextCharacters(holder);
+                        handler.characters(text, holder[0], holder[1]);
+                    }
+                    break;
+            }
+            eventType = parser.next();
+        }
+
+        return handler.feed();
+    }
+
+    /**
+     * Read-only view on the attributes of the current start tag of a pull
+     * parser. Only valid until the parser is advanced.
+     */
+    private static final class Attributes implements org.xml.sax.Attributes {
+
+        private static final String CDATA = "CDATA";
+
+        private final XmlPullParser parser;
+
+        Attributes(XmlPullParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public int getLength() {
+            return parser.getAttributeCount();
+        }
+
+        @Override
+        public String getURI(int index) {
+            return parser.getAttributeNamespace(index);
+        }
+
+        @Override
+        public String getLocalName(int index) {
+            return parser.getAttributeName(index);
+        }
+
+        @Override
+        public String getQName(int index) {
+            return parser.getAttributeName(index);
+        }
+
+        @Override
+        public String getType(int index) {
+            return CDATA;
+        }
+
+        @Override
+        public String getValue(int index) {
+            return parser.getAttributeValue(index);
+        }
+
+        @Override
+        public int getIndex(String uri, String localName) {
+            return getIndex(localName);
+        }
+
+        @Override
+        public int getIndex(String qName) {
+            final int count = parser.getAttributeCount();
+            for (int i = 0; i < count; i++) {
+                if (qName.equals(parser.getAttributeName(i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String getType(String uri, String localName) {
+            return getIndex(localName) < 0 ? null : CDATA;
+        }
+
+        @Override
+        public String getType(String qName) {
+            return getIndex(qName) < 0 ? null : CDATA;
+        }
+
+        @Override
+        public String getValue(String uri, String localName) {
+            return getValue(localName);
+        }
+
+        @Override
+        public String getValue(String qName) {
+            final int index = getIndex(qName);
+            return index < 0 ? null : parser.getAttributeValue(index);
+        }
+
+    }
+
+}
@@ -67,7 +67,7 @@ public class RSSReader implements java.io.Closeable {
      * @param config     RSS configuration
      */
     public RSSReader(HttpClient httpclient, RSSConfig config) {
-        this(httpclient, new RSSParser(config));
+        this(httpclient, config.newParser());
     }
 
     /**
@@ -76,7 +76,7 @@ public class RSSReader implements java.io.Closeable {
      * {@link RSSConfig}.
      */
     public RSSReader(RSSConfig config) {
-        this(new DefaultHttpClient(), new RSSParser(config));
+        this(new DefaultHttpClient(), config.newParser());
     }
 
     /**
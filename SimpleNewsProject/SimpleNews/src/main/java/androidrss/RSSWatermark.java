@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidrss;
+
+/**
+ * Immutable position in an RSS feed which lists its items newest first. An
+ * incremental parse stops at the first item which has the link of the
+ * watermark or which is older than it.
+ */
+public final class RSSWatermark {
+
+    private final String link;
+    private final java.util.Date pubDate;
+
+    /**
+     * @param link    link of the newest known item, may be {@code null}
+     * @param pubDate publication date of the newest known item, may be
+     *                {@code null}
+     */
+    public RSSWatermark(String link, java.util.Date pubDate) {
+        if (link == null && pubDate == null) {
+            throw new IllegalArgumentException("Watermark needs a link or a date.");
+        }
+        this.link = link;
+        this.pubDate = pubDate;
+    }
+
+    /**
+     * Returns the watermark of the first item if the items are sorted newest
+     * first by their publication dates, {@code null} otherwise. Without dates
+     * the order of the items is unknown.
+     */
+    public static RSSWatermark newest(java.util.List<RSSItem> items) {
+        if (items == null || items.isEmpty()) {
+            return null;
+        }
+        java.util.Date previous = null;
+        for (RSSItem item : items) {
+            final java.util.Date date = item.getPubDate();
+            if (date == null || (previous != null && date.after(previous))) {
+                return null;
+            }
+            previous = date;
+        }
+        final RSSItem first = items.get(0);
+        final String link = first.getLink() == null ? null : first.getLink().toString();
+        return new RSSWatermark(link, first.getPubDate());
+    }
+
+    public String getLink() {
+        return link;
+    }
+
+    public java.util.Date getPubDate() {
+        return pubDate;
+    }
+
+    /**
+     * Determines if the item is known already.
+     */
+    public boolean isReached(RSSItem item) {
+        if (link != null && item.getLink() != null && link.equals(item.getLink().toString())) {
+            return true;
+        }
+        return pubDate != null && item.getPubDate() != null && item.getPubDate().before(pubDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return (link == null ? 0 : link.hashCode()) * 31 + (pubDate == null ? 0 : pubDate.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        } else if (object instanceof RSSWatermark) {
+            final RSSWatermark other = (RSSWatermark) object;
+            return (link == null ? other.link == null : link.equals(other.link))
+                    && (pubDate == null ? other.pubDate == null : pubDate.equals(other.pubDate));
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the link and the time of the watermark.
+     */
+    @Override
+    public String toString() {
+        return link + "@" + (pubDate == null ? null : pubDate.getTime());
+    }
+
+}
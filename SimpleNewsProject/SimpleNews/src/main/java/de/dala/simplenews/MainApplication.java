@@ -7,6 +7,7 @@ import com.crashlytics.android.Crashlytics;
 import de.dala.simplenews.database.DatabaseHandler;
 import de.dala.simplenews.network.VolleySingleton;
 import de.dala.simplenews.parser.XmlParser;
+import de.dala.simplenews.service.UpdateService;
 import de.dala.simplenews.utilities.ColorManager;
 import de.dala.simplenews.utilities.PrefUtilities;
 
@@ -23,5 +24,6 @@ public class MainApplication extends Application {
         DatabaseHandler.init(this, DatabaseHandler.DATABASE_NAME);
         PrefUtilities.init(this);
         ColorManager.init(this);
+        UpdateService.schedule(this);
     }
 }
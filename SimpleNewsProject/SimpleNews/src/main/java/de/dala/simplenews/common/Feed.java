@@ -20,6 +20,26 @@ public class Feed implements Serializable {
     private String title;
     private String description;
     private boolean visible = true;
+    /**
+     * HTTP validators of the last successfully parsed response, used for conditional requests
+     */
+    private String etag;
+    private String lastModified;
+    /**
+     * Refresh schedule, see {@link de.dala.simplenews.utilities.FeedScheduler}
+     */
+    private Long nextUpdate;
+    private Long updateInterval;
+    private int failureCount;
+    /**
+     * Link and date of the newest stored item, see {@link androidrss.RSSWatermark}
+     */
+    private String watermarkLink;
+    private Long watermarkDate;
+    /**
+     * Time the whole feed has been stored last, later refreshes may add the new items only
+     */
+    private Long fullRefresh;
     /**
      * Feed type, for example RSS 2 or Atom
      */
@@ -101,4 +121,68 @@ public class Feed implements Serializable {
     public void setHtmlUrl(String htmlUrl){
         this.htmlUrl = htmlUrl;
     }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public Long getNextUpdate() {
+        return nextUpdate;
+    }
+
+    public void setNextUpdate(Long nextUpdate) {
+        this.nextUpdate = nextUpdate;
+    }
+
+    public Long getUpdateInterval() {
+        return updateInterval;
+    }
+
+    public void setUpdateInterval(Long updateInterval) {
+        this.updateInterval = updateInterval;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public void setFailureCount(int failureCount) {
+        this.failureCount = failureCount;
+    }
+
+    public String getWatermarkLink() {
+        return watermarkLink;
+    }
+
+    public void setWatermarkLink(String watermarkLink) {
+        this.watermarkLink = watermarkLink;
+    }
+
+    public Long getWatermarkDate() {
+        return watermarkDate;
+    }
+
+    public void setWatermarkDate(Long watermarkDate) {
+        this.watermarkDate = watermarkDate;
+    }
+
+    public Long getFullRefresh() {
+        return fullRefresh;
+    }
+
+    public void setFullRefresh(Long fullRefresh) {
+        this.fullRefresh = fullRefresh;
+    }
 }
@@ -0,0 +1,152 @@
+package de.dala.simplenews.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dala.simplenews.common.Category;
+import de.dala.simplenews.common.Entry;
+import de.dala.simplenews.common.Feed;
+
+import static de.dala.simplenews.database.DatabaseHandler.*;
+
+/**
+ * Loads categories together with their feeds and entries with one joined query instead of one
+ * query per category and feed. Only the tables that are asked for are joined and selected.
+ */
+public class CategoryGraphLoader {
+
+    private static final String categoryTableShortName = "categoryTable";
+    private static final String feedTableShortName = "feedTable";
+    private static final String entryTableShortName = "entryTable";
+
+    private static final String[] CATEGORY_COLUMNS = {CATEGORY_ID, CATEGORY_COLOR, CATEGORY_NAME,
+            CATEGORY_LAST_UPDATE, CATEGORY_VISIBLE, CATEGORY_ORDER};
+    private static final String[] FEED_COLUMNS = {FEED_ID, FEED_CATEGORY_ID, FEED_TITLE, FEED_DESCRIPTION,
+            FEED_URL, FEED_VISIBLE, FEED_HTML_URL, FEED_ETAG, FEED_LAST_MODIFIED, FEED_NEXT_UPDATE,
+            FEED_UPDATE_INTERVAL, FEED_FAILURE_COUNT, FEED_WATERMARK_LINK, FEED_WATERMARK_DATE,
+            FEED_FULL_REFRESH};
+    private static final String[] ENTRY_COLUMNS = {ENTRY_ID, ENTRY_CATEGORY_ID, ENTRY_FEED_ID, ENTRY_TITLE,
+            ENTRY_DESCRIPTION, ENTRY_DATE, ENTRY_SRC_NAME, ENTRY_URL, ENTRY_SHORTENED_URL, ENTRY_IMAGE_URL,
+            ENTRY_VISIBLE, ENTRY_VISITED_DATE, ENTRY_FAVORITE_DATE, ENTRY_IS_EXPANDED};
+
+    private static final int FEED_OFFSET = CATEGORY_COLUMNS.length;
+    private static final int ENTRY_OFFSET = FEED_OFFSET + FEED_COLUMNS.length;
+
+    private Long mCategoryId;
+    private boolean mWithFeeds;
+    private boolean mWithEntries;
+    private Boolean mOnlyVisible;
+    private SQLiteDatabase db;
+
+    /**
+     * @param withFeeds   join and read the feeds of each category
+     * @param withEntries join and read the entries of each feed, implies feeds
+     * @param onlyVisible filters categories, feeds and entries by their visibility
+     */
+    public CategoryGraphLoader(Long categoryId, boolean withFeeds, boolean withEntries, Boolean onlyVisible) {
+        mCategoryId = categoryId;
+        mWithFeeds = withFeeds || withEntries;
+        mWithEntries = withEntries;
+        mOnlyVisible = onlyVisible;
+        db = DatabaseHandler.getDbInstance();
+    }
+
+    public String getQuery() {
+        StringBuilder select = new StringBuilder("SELECT ");
+        appendColumns(select, categoryTableShortName, CATEGORY_COLUMNS);
+        if (mWithFeeds) {
+            select.append(", ");
+            appendColumns(select, feedTableShortName, FEED_COLUMNS);
+        }
+        if (mWithEntries) {
+            select.append(", ");
+            appendColumns(select, entryTableShortName, ENTRY_COLUMNS);
+        }
+        select.append(" FROM ").append(TABLE_CATEGORY).append(" ").append(categoryTableShortName);
+
+        // filters of the joined tables belong to the join, so categories and feeds without children are kept
+        if (mWithFeeds) {
+            String feedJoin = feedTableShortName + "." + FEED_CATEGORY_ID + "=" + categoryTableShortName + "." + CATEGORY_ID;
+            if (mOnlyVisible != null) {
+                feedJoin = concatenateQueries(feedJoin, feedTableShortName + "." + FEED_VISIBLE + "=" + (mOnlyVisible ? "1" : "0"));
+            }
+            select.append(" LEFT JOIN ").append(TABLE_FEED).append(" ").append(feedTableShortName)
+                    .append(" ON ").append(feedJoin);
+        }
+        if (mWithEntries) {
+            String entryJoin = entryTableShortName + "." + ENTRY_FEED_ID + "=" + feedTableShortName + "." + FEED_ID;
+            entryJoin = concatenateQueries(entryJoin, entryTableShortName + "." + ENTRY_CATEGORY_ID + "=" + feedTableShortName + "." + FEED_CATEGORY_ID);
+            if (mOnlyVisible != null) {
+                entryJoin = concatenateQueries(entryJoin, entryTableShortName + "." + ENTRY_VISIBLE + "=" + (mOnlyVisible ? "1" : "0"));
+            }
+            select.append(" LEFT JOIN ").append(TABLE_ENTRY).append(" ").append(entryTableShortName)
+                    .append(" ON ").append(entryJoin);
+        }
+
+        String query = null;
+        if (mCategoryId != null) {
+            query = concatenateQueries(query, categoryTableShortName + "." + CATEGORY_ID + "=" + mCategoryId);
+        }
+        if (mOnlyVisible != null) {
+            query = concatenateQueries(query, categoryTableShortName + "." + CATEGORY_VISIBLE + "=" + (mOnlyVisible ? "1" : "0"));
+        }
+        if (query != null) {
+            select.append(" WHERE ").append(query);
+        }
+
+        // rows of one category and feed have to be adjacent
+        select.append(" ORDER BY ").append(categoryTableShortName).append(".").append(CATEGORY_ID);
+        if (mWithFeeds) {
+            select.append(", ").append(feedTableShortName).append(".").append(FEED_ID);
+        }
+        if (mWithEntries) {
+            select.append(", ").append(entryTableShortName).append(".").append(ENTRY_DATE).append(" DESC");
+        }
+        return select.toString();
+    }
+
+    public List<Category> load() {
+        List<Category> categories = new ArrayList<Category>();
+        Cursor cursor = db.rawQuery(getQuery(), null);
+        try {
+            Category category = null;
+            Feed feed = null;
+            while (cursor.moveToNext()) {
+                long categoryId = cursor.getLong(0);
+                if (category == null || category.getId() != categoryId) {
+                    category = PersistableCategories.loadFromCursor(cursor, 0);
+                    categories.add(category);
+                    feed = null;
+                }
+                if (!mWithFeeds || cursor.isNull(FEED_OFFSET)) {
+                    continue;
+                }
+                long feedId = cursor.getLong(FEED_OFFSET);
+                if (feed == null || feed.getId() != feedId) {
+                    feed = PersistableFeeds.loadFromCursor(cursor, FEED_OFFSET);
+                    category.getFeeds().add(feed);
+                }
+                if (!mWithEntries || cursor.isNull(ENTRY_OFFSET)) {
+                    continue;
+                }
+                Entry entry = PersistableEntries.loadFromCursor(cursor, ENTRY_OFFSET);
+                feed.getEntries().add(entry);
+            }
+        } finally {
+            cursor.close();
+        }
+        return categories;
+    }
+
+    private static void appendColumns(StringBuilder select, String table, String[] columns) {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                select.append(", ");
+            }
+            select.append(table).append(".").append(columns[i]);
+        }
+    }
+}
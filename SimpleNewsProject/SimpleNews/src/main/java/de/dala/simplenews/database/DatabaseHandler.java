@@ -2,14 +2,20 @@ package de.dala.simplenews.database;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.MergeCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import de.dala.simplenews.common.Category;
 import de.dala.simplenews.common.Entry;
 import de.dala.simplenews.common.Feed;
@@ -29,15 +35,21 @@ public class DatabaseHandler extends SQLiteOpenHelper implements
     /**
      * Database Name and Version
      */
-    private static final int DATABASE_VERSION = 43;
+    private static final int DATABASE_VERSION = 50;
     public static final String DATABASE_NAME = "news_database.db";
 
+    /**
+     * Maximum number of arguments of one statement, SQLITE_MAX_VARIABLE_NUMBER
+     */
+    private static final int MAX_QUERY_ARGUMENTS = 999;
+
     /**
      * Table names
      */
     public static final String TABLE_CATEGORY = "category";
     public static final String TABLE_FEED = "feed";
     public static final String TABLE_ENTRY = "entry";
+    public static final String TABLE_SHORT_LINK = "short_link";
 
     public static final String CATEGORY_ID = "_id";
     public static final String CATEGORY_COLOR = "color";
@@ -53,6 +65,14 @@ public class DatabaseHandler extends SQLiteOpenHelper implements
     public static final String FEED_URL = "url";
     public static final String FEED_HTML_URL = "html_url";
     public static final String FEED_VISIBLE = "visible";
+    public static final String FEED_ETAG = "etag";
+    public static final String FEED_LAST_MODIFIED = "last_modified";
+    public static final String FEED_NEXT_UPDATE = "next_update";
+    public static final String FEED_UPDATE_INTERVAL = "update_interval";
+    public static final String FEED_FAILURE_COUNT = "failure_count";
+    public static final String FEED_WATERMARK_LINK = "watermark_link";
+    public static final String FEED_WATERMARK_DATE = "watermark_date";
+    public static final String FEED_FULL_REFRESH = "full_refresh";
 
     public static final String ENTRY_ID = "_id";
     public static final String ENTRY_CATEGORY_ID = "category_id";
@@ -69,6 +89,19 @@ public class DatabaseHandler extends SQLiteOpenHelper implements
     public static final String ENTRY_FAVORITE_DATE = "favorite";
     public static final String ENTRY_IS_EXPANDED = "expanded";
 
+    public static final String SHORT_LINK_URL = "url";
+    public static final String SHORT_LINK_SHORTENED_URL = "shortened_url";
+
+    /**
+     * Index names
+     */
+    public static final String INDEX_ENTRY_URL = "entry_category_url";
+    public static final String INDEX_ENTRY_DATE = "entry_category_date";
+    public static final String INDEX_ENTRY_VISITED = "entry_category_visited";
+    public static final String INDEX_ENTRY_FAVORITE = "entry_category_favorite";
+    public static final String INDEX_ENTRY_FEED = "entry_feed";
+    public static final String INDEX_FEED_CATEGORY = "feed_category";
+
     private static SQLiteDatabase db;
     private static DatabaseHandler instance;
 
@@ -143,7 +176,15 @@ public class DatabaseHandler extends SQLiteOpenHelper implements
                 + FEED_DESCRIPTION + " TEXT,"
                 + FEED_URL + " TEXT,"
                 + FEED_VISIBLE + " INTEGER,"
-                + FEED_HTML_URL + " TEXT"+ ");";
+                + FEED_HTML_URL + " TEXT,"
+                + FEED_ETAG + " TEXT,"
+                + FEED_LAST_MODIFIED + " TEXT,"
+                + FEED_NEXT_UPDATE + " LONG,"
+                + FEED_UPDATE_INTERVAL + " LONG,"
+                + FEED_FAILURE_COUNT + " INTEGER,"
+                + FEED_WATERMARK_LINK + " TEXT,"
+                + FEED_WATERMARK_DATE + " LONG,"
+                + FEED_FULL_REFRESH + " LONG" + ");";
         String createEntryTable = "CREATE TABLE "
                 + TABLE_ENTRY + "("
                 + ENTRY_ID + " INTEGER PRIMARY KEY, "
@@ -160,9 +201,44 @@ public class DatabaseHandler extends SQLiteOpenHelper implements
                 + ENTRY_VISITED_DATE + " LONG,"
                 + ENTRY_FAVORITE_DATE + " LONG,"
                 + ENTRY_IS_EXPANDED + " INTEGER"+ ");";
+        // one row per link and category, used to find an already stored entry while ingesting
+        String createEntryUrlIndex = "CREATE UNIQUE INDEX " + INDEX_ENTRY_URL + " ON "
+                + TABLE_ENTRY + "(" + ENTRY_CATEGORY_ID + ", " + ENTRY_URL + ")";
         db.execSQL(createCategoryTable);
         db.execSQL(createFeedTable);
         db.execSQL(createEntryTable);
+        db.execSQL(createEntryUrlIndex);
+        createSecondaryIndexes(db);
+        createShortLinkTable(db);
+    }
+
+    /**
+     * Shortened links by their link, kept independently of the entries, which are replaced on
+     * every refresh and may exist in several categories.
+     */
+    private void createShortLinkTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE "
+                + TABLE_SHORT_LINK + "("
+                + SHORT_LINK_URL + " TEXT PRIMARY KEY, "
+                + SHORT_LINK_SHORTENED_URL + " TEXT" + ");");
+    }
+
+    /**
+     * Indexes for the entry cursors, which filter by category and sort by date, and for the
+     * lookups of feeds and entries by their parent. Partial indexes would need SQLite 3.8,
+     * which is not available before Lollipop, so the read and favorite state are index columns.
+     */
+    private void createSecondaryIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX " + INDEX_ENTRY_DATE + " ON "
+                + TABLE_ENTRY + "(" + ENTRY_CATEGORY_ID + ", " + ENTRY_DATE + ")");
+        db.execSQL("CREATE INDEX " + INDEX_ENTRY_VISITED + " ON "
+                + TABLE_ENTRY + "(" + ENTRY_CATEGORY_ID + ", " + ENTRY_VISITED_DATE + ", " + ENTRY_DATE + ")");
+        db.execSQL("CREATE INDEX " + INDEX_ENTRY_FAVORITE + " ON "
+                + TABLE_ENTRY + "(" + ENTRY_CATEGORY_ID + ", " + ENTRY_FAVORITE_DATE + ")");
+        db.execSQL("CREATE INDEX " + INDEX_ENTRY_FEED + " ON "
+                + TABLE_ENTRY + "(" + ENTRY_FEED_ID + ")");
+        db.execSQL("CREATE INDEX " + INDEX_FEED_CATEGORY + " ON "
+                + TABLE_FEED + "(" + FEED_CATEGORY_ID + ")");
     }
 
     @Override
@@ -177,6 +253,14 @@ public class DatabaseHandler extends SQLiteOpenHelper implements
         String upgradeQueryFavorite = "ALTER TABLE " + TABLE_ENTRY + " ADD COLUMN " + ENTRY_FAVORITE_DATE + " LONG";
         String upgradeQueryEntry = "ALTER TABLE " + TABLE_ENTRY + " ADD COLUMN " + ENTRY_IS_EXPANDED + " INTEGER";
         String upgradeQueryFeed = "ALTER TABLE " + TABLE_FEED + " ADD COLUMN " + FEED_HTML_URL + " TEXT";
+        String upgradeQueryFeedEtag = "ALTER TABLE " + TABLE_FEED + " ADD COLUMN " + FEED_ETAG + " TEXT";
+        String upgradeQueryFeedLastModified = "ALTER TABLE " + TABLE_FEED + " ADD COLUMN " + FEED_LAST_MODIFIED + " TEXT";
+        String upgradeQueryFeedNextUpdate = "ALTER TABLE " + TABLE_FEED + " ADD COLUMN " + FEED_NEXT_UPDATE + " LONG";
+        String upgradeQueryFeedUpdateInterval = "ALTER TABLE " + TABLE_FEED + " ADD COLUMN " + FEED_UPDATE_INTERVAL + " LONG";
+        String upgradeQueryFeedFailureCount = "ALTER TABLE " + TABLE_FEED + " ADD COLUMN " + FEED_FAILURE_COUNT + " INTEGER";
+        String upgradeQueryFeedWatermarkLink = "ALTER TABLE " + TABLE_FEED + " ADD COLUMN " + FEED_WATERMARK_LINK + " TEXT";
+        String upgradeQueryFeedWatermarkDate = "ALTER TABLE " + TABLE_FEED + " ADD COLUMN " + FEED_WATERMARK_DATE + " LONG";
+        String upgradeQueryFeedFullRefresh = "ALTER TABLE " + TABLE_FEED + " ADD COLUMN " + FEED_FULL_REFRESH + " LONG";
 
         if (oldVersion < 35 && newVersion >= 35) {
             db.execSQL(upgradeQueryVisited);
@@ -187,23 +271,82 @@ public class DatabaseHandler extends SQLiteOpenHelper implements
             db.execSQL(upgradeQueryEntry);
             db.execSQL(upgradeQueryFeed);
         }
+
+        if (oldVersion < 44 && newVersion >= 44) {
+            db.execSQL(upgradeQueryFeedEtag);
+            db.execSQL(upgradeQueryFeedLastModified);
+        }
+
+        if (oldVersion < 45 && newVersion >= 45) {
+            // older versions stored the same link more than once, keep the first row only. It gets
+            // the favorite and visited dates of its copies first, so no user state is lost
+            String sameLink = " WHERE copy." + ENTRY_CATEGORY_ID + "=" + TABLE_ENTRY + "." + ENTRY_CATEGORY_ID
+                    + " AND copy." + ENTRY_URL + "=" + TABLE_ENTRY + "." + ENTRY_URL + ")";
+            String firstRows = "SELECT MIN(" + ENTRY_ID + ") FROM " + TABLE_ENTRY
+                    + " GROUP BY " + ENTRY_CATEGORY_ID + ", " + ENTRY_URL;
+            db.execSQL("CREATE INDEX " + INDEX_ENTRY_URL + " ON "
+                    + TABLE_ENTRY + "(" + ENTRY_CATEGORY_ID + ", " + ENTRY_URL + ")");
+            db.execSQL("UPDATE " + TABLE_ENTRY + " SET "
+                    + ENTRY_FAVORITE_DATE + "=(SELECT MAX(copy." + ENTRY_FAVORITE_DATE + ") FROM " + TABLE_ENTRY + " copy" + sameLink + ", "
+                    + ENTRY_VISITED_DATE + "=(SELECT MAX(copy." + ENTRY_VISITED_DATE + ") FROM " + TABLE_ENTRY + " copy" + sameLink
+                    + " WHERE " + ENTRY_URL + " IS NOT NULL AND " + ENTRY_ID + " IN (" + firstRows
+                    + " HAVING COUNT(*) > 1)");
+            db.execSQL("DELETE FROM " + TABLE_ENTRY + " WHERE " + ENTRY_URL + " IS NOT NULL AND "
+                    + ENTRY_ID + " NOT IN (" + firstRows + ")");
+            db.execSQL("DROP INDEX " + INDEX_ENTRY_URL);
+            db.execSQL("CREATE UNIQUE INDEX " + INDEX_ENTRY_URL + " ON "
+                    + TABLE_ENTRY + "(" + ENTRY_CATEGORY_ID + ", " + ENTRY_URL + ")");
+        }
+
+        if (oldVersion < 46 && newVersion >= 46) {
+            createSecondaryIndexes(db);
+        }
+
+        if (oldVersion < 47 && newVersion >= 47) {
+            db.execSQL(upgradeQueryFeedNextUpdate);
+            db.execSQL(upgradeQueryFeedUpdateInterval);
+            db.execSQL(upgradeQueryFeedFailureCount);
+        }
+
+        if (oldVersion < 48 && newVersion >= 48) {
+            createShortLinkTable(db);
+            db.execSQL("INSERT OR IGNORE INTO " + TABLE_SHORT_LINK + "(" + SHORT_LINK_URL + ", " + SHORT_LINK_SHORTENED_URL + ")"
+                    + " SELECT " + ENTRY_URL + ", " + ENTRY_SHORTENED_URL + " FROM " + TABLE_ENTRY
+                    + " WHERE " + ENTRY_URL + " IS NOT NULL AND " + ENTRY_SHORTENED_URL + " IS NOT NULL");
+        }
+
+        if (oldVersion < 49 && newVersion >= 49) {
+            db.execSQL(upgradeQueryFeedWatermarkLink);
+            db.execSQL(upgradeQueryFeedWatermarkDate);
+        }
+
+        if (oldVersion < 50 && newVersion >= 50) {
+            db.execSQL(upgradeQueryFeedFullRefresh);
+        }
     }
 
     public List<Category> getCategories(Boolean excludeFeeds, Boolean excludeEntries, Boolean visible) {
-        IPersistableObject<Category> persistence = new PersistableCategories(null, excludeFeeds, excludeEntries, visible);
-        return load(persistence);
+        return getCategoryGraph(null, excludeFeeds, excludeEntries, visible).load();
     }
 
     @Override
     public Category getCategory(Long categoryId, Boolean excludeFeeds, Boolean excludeEntries) {
-        IPersistableObject<Category> persistence = new PersistableCategories(categoryId, excludeFeeds, excludeEntries, null);
-        List<Category> result = load(persistence);
+        List<Category> result = getCategoryGraph(categoryId, excludeFeeds, excludeEntries, null).load();
         if (result != null && result.size() == 1){
             return result.get(0);
         }
         return null;
     }
 
+    /**
+     * Feeds are loaded unless excluded, entries only if {@code excludeEntries} is {@code false}.
+     */
+    private CategoryGraphLoader getCategoryGraph(Long categoryId, Boolean excludeFeeds, Boolean excludeEntries, Boolean visible) {
+        boolean withFeeds = excludeFeeds == null || !excludeFeeds;
+        boolean withEntries = withFeeds && excludeEntries != null && !excludeEntries;
+        return new CategoryGraphLoader(categoryId, withFeeds, withEntries, visible);
+    }
+
     @Override
     public long addCategory(Category category, Boolean excludeFeeds, Boolean excludeEntries) {
         IPersistableObject<Category> persistence = new PersistableCategories(null, excludeFeeds, excludeEntries, null);
@@ -299,6 +442,20 @@ public class DatabaseHandler extends SQLiteOpenHelper implements
         return persistence.store(entries);
     }
 
+    @Override
+    public long[] replaceFeedEntries(long categoryId, long feedId, List<Entry> entries) {
+        IPersistableObject<Entry> persistence = new PersistableEntries(categoryId, feedId, null, null);
+        db.beginTransaction();
+        try {
+            persistence.delete();
+            long[] ids = persistence.store(entries);
+            db.setTransactionSuccessful();
+            return ids;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     @Override
     public int updateEntry(Entry entry) {
         IPersistableObject<Entry> persistence = new PersistableEntries(entry.getCategoryId(), entry.getFeedId(), entry.getId(), null);
@@ -369,6 +526,38 @@ public class DatabaseHandler extends SQLiteOpenHelper implements
         return getUnreadEntriesCursor(categoryId, null);
     }
 
+    @Override
+    public Cursor getEntriesPage(Long categoryId, Boolean onlyVisible, Long lastDate, Long lastId, int limit) {
+        return getPage(new PersistableEntries(categoryId, null, null, onlyVisible), lastDate, lastId, limit);
+    }
+
+    @Override
+    public Cursor getFavoriteEntriesPage(Long categoryId, Long lastDate, Long lastId, int limit) {
+        return getPage(new PersistableFavoriteEntries(categoryId, null, null, null), lastDate, lastId, limit);
+    }
+
+    @Override
+    public Cursor getRecentEntriesPage(Long categoryId, Long lastDate, Long lastId, int limit) {
+        return getPage(new PersistableVisibleEntries(categoryId, null, null, null), lastDate, lastId, limit);
+    }
+
+    @Override
+    public Cursor getUnreadEntriesPage(Long categoryId, Long lastDate, Long lastId, int limit) {
+        return getPage(new PersistableUnreadEntries(categoryId, null, null, null), lastDate, lastId, limit);
+    }
+
+    private Cursor getPage(PersistableEntries persistence, Long lastDate, Long lastId, int limit) {
+        persistence.setPage(lastDate, lastId, limit);
+        Cursor page = persistence.getCursor();
+        int count = page.getCount();
+        if (lastDate == null || count >= limit) {
+            return page;
+        }
+        // the dated entries are all loaded, the ones without date follow them
+        persistence.setPage(null, Long.MAX_VALUE, limit - count);
+        return new MergeCursor(new Cursor[]{page, persistence.getCursor()});
+    }
+
     @Override
     public void deleteDeprecatedEntries(Long deprecatedTime) {
         if (deprecatedTime != null) {
@@ -378,6 +567,66 @@ public class DatabaseHandler extends SQLiteOpenHelper implements
         }
     }
 
+    @Override
+    public List<Long> getLatestEntryDates(long feedId, int limit) {
+        List<Long> dates = new ArrayList<Long>();
+        Cursor cursor = db.query(TABLE_ENTRY, new String[]{ENTRY_DATE},
+                ENTRY_FEED_ID + "=" + feedId + " AND " + ENTRY_DATE + " > 0",
+                null, null, null, ENTRY_DATE + " DESC", String.valueOf(limit));
+        try {
+            while (cursor.moveToNext()) {
+                dates.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return dates;
+    }
+
+    @Override
+    public Map<String, String> getShortenedLinks(Collection<String> urls) {
+        Map<String, String> shortenedLinks = new HashMap<String, String>();
+        String[] allUrls = urls.toArray(new String[urls.size()]);
+        // one query per chunk, a statement takes at most 999 arguments
+        for (int start = 0; start < allUrls.length; start += MAX_QUERY_ARGUMENTS) {
+            String[] selectionArgs = Arrays.copyOfRange(allUrls, start,
+                    Math.min(allUrls.length, start + MAX_QUERY_ARGUMENTS));
+            StringBuilder selection = new StringBuilder(SHORT_LINK_URL + " IN (");
+            for (int i = 0; i < selectionArgs.length; i++) {
+                selection.append(i == 0 ? "?" : ", ?");
+            }
+            selection.append(")");
+            Cursor cursor = db.query(TABLE_SHORT_LINK, new String[]{SHORT_LINK_URL, SHORT_LINK_SHORTENED_URL},
+                    selection.toString(), selectionArgs, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    shortenedLinks.put(cursor.getString(0), cursor.getString(1));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return shortenedLinks;
+    }
+
+    @Override
+    public void addShortenedLinks(Map<String, String> shortenedLinks) {
+        SQLiteStatement statement = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_SHORT_LINK
+                + "(" + SHORT_LINK_URL + ", " + SHORT_LINK_SHORTENED_URL + ") VALUES (?, ?)");
+        db.beginTransaction();
+        try {
+            for (Map.Entry<String, String> shortenedLink : shortenedLinks.entrySet()) {
+                statement.bindString(1, shortenedLink.getKey());
+                statement.bindString(2, shortenedLink.getValue());
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+    }
+
     @Override
     public void removeAllCategories() {
         IPersistableObject<Category> persistence = new PersistableCategories(null , null, null, null);
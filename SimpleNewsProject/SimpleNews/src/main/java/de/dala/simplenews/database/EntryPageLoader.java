@@ -0,0 +1,210 @@
+package de.dala.simplenews.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.MergeCursor;
+import android.support.v4.content.AsyncTaskLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Loads entries page by page, ordered by date and id as returned by the page cursors of
+ * {@link IDatabaseHandler}. The delivered cursor contains every page loaded so far, so adapters
+ * keep working with positions. {@link #loadNextPage()} appends the next page, every other load
+ * replaces the content with as many entries as were shown before.
+ */
+public abstract class EntryPageLoader extends AsyncTaskLoader<Cursor> {
+    private final int mPageSize;
+    private volatile PageCursor mCursor;
+    private volatile boolean mNextPage;
+    private boolean mLoading;
+
+    public EntryPageLoader(Context context, int pageSize) {
+        super(context);
+        mPageSize = pageSize;
+    }
+
+    /* Runs on a worker thread */
+    public abstract Cursor loadPage(Long lastDate, Long lastId, int limit);
+
+    /* Runs on a worker thread */
+    @Override
+    public Cursor loadInBackground() {
+        PageCursor previous = mCursor;
+        boolean nextPage = mNextPage && previous != null;
+        mNextPage = false;
+
+        List<Cursor> pages = new ArrayList<Cursor>();
+        Long lastDate = null;
+        Long lastId = null;
+        int limit = mPageSize;
+        if (nextPage) {
+            pages.addAll(previous.mPages);
+            lastDate = previous.mLastDate;
+            lastId = previous.mLastId;
+        } else if (previous != null) {
+            // keep everything that has been scrolled to
+            limit = Math.max(mPageSize, previous.mCount);
+        }
+
+        Cursor page = loadPage(lastDate, lastId, limit);
+        if (page == null) {
+            return null;
+        }
+        // fills the cursor window here instead of on the UI thread
+        int count = page.getCount();
+        if (count > 0 && page.moveToLast()) {
+            EntryRow last = new EntryRow().moveTo(page);
+            // entries without date are paged by id only
+            lastDate = last.hasDate() ? last.getDate() : null;
+            lastId = last.getId();
+        }
+        pages.add(page);
+        int total = nextPage ? previous.mCount + count : count;
+        return new PageCursor(pages, total, lastDate, lastId, count == limit, nextPage);
+    }
+
+    /**
+     * Appends the next page if there is one and no other load is running.
+     * <p/>
+     * Must be called from the UI thread
+     */
+    public void loadNextPage() {
+        PageCursor cursor = mCursor;
+        if (!mLoading && cursor != null && cursor.mHasMore) {
+            mNextPage = true;
+            forceLoad();
+        }
+    }
+
+    /**
+     * @return whether the current cursor only added a page to the previous one
+     */
+    public boolean isNextPage() {
+        PageCursor cursor = mCursor;
+        return cursor != null && cursor.mNextPage;
+    }
+
+    /* Runs on the UI thread */
+    @Override
+    public void deliverResult(Cursor cursor) {
+        mLoading = false;
+        if (isReset()) {
+            // An async query came in while the loader is stopped
+            release((PageCursor) cursor);
+            return;
+        }
+        if (cursor == null) {
+            if (isStarted()) {
+                super.deliverResult(null);
+            }
+            return;
+        }
+        PageCursor oldCursor = mCursor;
+        mCursor = (PageCursor) cursor;
+
+        if (isStarted()) {
+            super.deliverResult(cursor);
+        }
+
+        if (oldCursor != cursor) {
+            release(oldCursor);
+        }
+    }
+
+    @Override
+    protected void onForceLoad() {
+        mLoading = true;
+        super.onForceLoad();
+    }
+
+    /**
+     * Must be called from the UI thread
+     */
+    @Override
+    protected void onStartLoading() {
+        mNextPage = false;
+        forceLoad();
+    }
+
+    /**
+     * Must be called from the UI thread
+     */
+    @Override
+    protected void onStopLoading() {
+        // Attempt to cancel the current load task if possible.
+        cancelLoad();
+        mLoading = false;
+    }
+
+    @Override
+    public void onCanceled(Cursor cursor) {
+        release((PageCursor) cursor);
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+
+        // Ensure the loader is stopped
+        onStopLoading();
+
+        PageCursor cursor = mCursor;
+        mCursor = null;
+        release(cursor);
+    }
+
+    /**
+     * Closes the pages of the cursor which are not part of the current one.
+     */
+    private void release(PageCursor cursor) {
+        if (cursor == null) {
+            return;
+        }
+        PageCursor current = mCursor;
+        for (Cursor page : cursor.mPages) {
+            if ((current == null || !current.mPages.contains(page)) && !page.isClosed()) {
+                page.close();
+            }
+        }
+    }
+
+    /**
+     * All pages loaded so far as one cursor. Closing it leaves the pages open, as the next
+     * cursor may still use them, they are closed by the loader.
+     */
+    private static class PageCursor extends MergeCursor {
+        private final List<Cursor> mPages;
+        private final int mCount;
+        private final Long mLastDate;
+        private final Long mLastId;
+        private final boolean mHasMore;
+        private final boolean mNextPage;
+
+        private PageCursor(List<Cursor> pages, int count, Long lastDate, Long lastId, boolean hasMore, boolean nextPage) {
+            super(wrap(pages));
+            mPages = pages;
+            mCount = count;
+            mLastDate = lastDate;
+            mLastId = lastId;
+            mHasMore = hasMore;
+            mNextPage = nextPage;
+        }
+
+        private static Cursor[] wrap(List<Cursor> pages) {
+            Cursor[] cursors = new Cursor[pages.size()];
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = new CursorWrapper(pages.get(i)) {
+                    @Override
+                    public void close() {
+                        // owned by the loader
+                    }
+                };
+            }
+            return cursors;
+        }
+    }
+}
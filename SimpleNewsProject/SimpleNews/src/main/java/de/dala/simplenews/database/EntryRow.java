@@ -0,0 +1,114 @@
+package de.dala.simplenews.database;
+
+import android.database.Cursor;
+
+import de.dala.simplenews.common.Entry;
+
+import static de.dala.simplenews.database.DatabaseHandler.*;
+
+/**
+ * View on the entry at the current position of a cursor, reading only the columns which are asked
+ * for. One instance is moved over all rows, so binding a row creates no {@link Entry}. The column
+ * indices are looked up once per cursor; the first column of a name wins, which is the entry one
+ * in the joins of {@link PersistableEntries}.
+ * <p/>
+ * The values are read when a getter is called, the cursor must still be at the row then.
+ */
+public class EntryRow {
+    private Cursor mCursor;
+
+    private int mId;
+    private int mTitle;
+    private int mDescription;
+    private int mDate;
+    private int mSrcName;
+    private int mLink;
+    private int mImageLink;
+    private int mVisitedDate;
+    private int mFavoriteDate;
+
+    /**
+     * @return this row, at the current position of the cursor
+     */
+    public EntryRow moveTo(Cursor cursor) {
+        if (cursor != mCursor) {
+            mCursor = cursor;
+            String[] columnNames = cursor.getColumnNames();
+            mId = indexOf(columnNames, ENTRY_ID);
+            mTitle = indexOf(columnNames, ENTRY_TITLE);
+            mDescription = indexOf(columnNames, ENTRY_DESCRIPTION);
+            mDate = indexOf(columnNames, ENTRY_DATE);
+            mSrcName = indexOf(columnNames, ENTRY_SRC_NAME);
+            mLink = indexOf(columnNames, ENTRY_URL);
+            mImageLink = indexOf(columnNames, ENTRY_IMAGE_URL);
+            mVisitedDate = indexOf(columnNames, ENTRY_VISITED_DATE);
+            mFavoriteDate = indexOf(columnNames, ENTRY_FAVORITE_DATE);
+        }
+        return this;
+    }
+
+    public long getId() {
+        return mCursor.getLong(mId);
+    }
+
+    public String getTitle() {
+        return mCursor.getString(mTitle);
+    }
+
+    public String getDescription() {
+        return mCursor.getString(mDescription);
+    }
+
+    /**
+     * @return the publication date, {@code 0} if the entry has none
+     */
+    public long getDate() {
+        return mCursor.getLong(mDate);
+    }
+
+    public boolean hasDate() {
+        return !mCursor.isNull(mDate);
+    }
+
+    public String getSrcName() {
+        return mCursor.getString(mSrcName);
+    }
+
+    public String getLink() {
+        return mCursor.getString(mLink);
+    }
+
+    public String getImageLink() {
+        return mCursor.getString(mImageLink);
+    }
+
+    /**
+     * @return the date of the last visit, {@code 0} if the entry has not been visited
+     */
+    public long getVisitedDate() {
+        return mCursor.getLong(mVisitedDate);
+    }
+
+    /**
+     * @return the date the entry became a favorite, {@code 0} if it is none
+     */
+    public long getFavoriteDate() {
+        return mCursor.getLong(mFavoriteDate);
+    }
+
+    /**
+     * Materializes the whole row, for changing or sharing the entry.
+     */
+    public Entry toEntry() {
+        return PersistableEntries.loadFromCursor(mCursor, mId);
+    }
+
+    private static int indexOf(String[] columnNames, String name) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (name.equalsIgnoreCase(columnNames[i])) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("column '" + name + "' does not exist");
+    }
+}
@@ -2,7 +2,9 @@ package de.dala.simplenews.database;
 
 import android.database.Cursor;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import de.dala.simplenews.common.Category;
 import de.dala.simplenews.common.Entry;
@@ -33,6 +35,7 @@ public interface IDatabaseHandler {
     Entry getEntry(long entryId);
     long addEntry(long categoryId, long feedId, Entry entry);
     long[] addEntries(Long categoryId, Long feedId, List<Entry> entries);
+    long[] replaceFeedEntries(long categoryId, long feedId, List<Entry> entries);
     int updateEntry(Entry entry);
     int removeEntries(Long categoryId, Long feedId, Long entryId);
     List<Entry> getFavoriteEntries(long categoryId);
@@ -45,7 +48,26 @@ public interface IDatabaseHandler {
     Cursor getFavoriteEntriesCursor(Long categoryId);
     Cursor getRecentEntriesCursor(Long categoryId);
     Cursor getUnreadEntriesCursor(Long categoryId);
+    /**
+     * Pages are ordered by date and id, entries without date last. The next page starts after the
+     * last entry of the previous one: its date, {@code null} if it has none, and its id.
+     */
+    Cursor getEntriesPage(Long categoryId, Boolean onlyVisible, Long lastDate, Long lastId, int limit);
+    Cursor getFavoriteEntriesPage(Long categoryId, Long lastDate, Long lastId, int limit);
+    Cursor getRecentEntriesPage(Long categoryId, Long lastDate, Long lastId, int limit);
+    Cursor getUnreadEntriesPage(Long categoryId, Long lastDate, Long lastId, int limit);
     void deleteDeprecatedEntries(Long deprecatedTime);
 
+    /**
+     * @return the publication dates of the newest stored entries of the feed, newest first
+     */
+    List<Long> getLatestEntryDates(long feedId, int limit);
+
+    /**
+     * @return the known shortened links of the given links, by link
+     */
+    Map<String, String> getShortenedLinks(Collection<String> urls);
+    void addShortenedLinks(Map<String, String> shortenedLinks);
+
     void loadXmlIntoDatabase(int xml);
 }
@@ -4,11 +4,9 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import de.dala.simplenews.common.Category;
-import de.dala.simplenews.common.Feed;
 
 import static de.dala.simplenews.database.DatabaseHandler.*;
 
@@ -43,32 +41,25 @@ public class PersistableCategories implements IPersistableObject<Category> {
         return db.query(TABLE_CATEGORY, null, query, null, null, null, null);
     }
 
+    /**
+     * Reads the category only, {@link CategoryGraphLoader} adds feeds and entries.
+     */
     @Override
     public Category loadFrom(Cursor cursor) {
-        Category category = new Category();
-        category.setId(cursor.getLong(0));
-        category.setColorId(cursor.getInt(1));
-        category.setName(cursor.getString(2));
-        category.setLastUpdateTime(cursor.getLong(3));
-        category.setVisible(cursor.getInt(4) == 1);
-        category.setOrder(cursor.getInt(5));
+        return loadFromCursor(cursor, 0);
+    }
 
-        if (mExcludeFeeds == null || !mExcludeFeeds) {
-            PersistableFeeds mPersistableFeeds = getPersistableFeeds(category.getId());
-            Cursor feedCursor = mPersistableFeeds.getCursor();
-            try {
-                if (feedCursor.moveToFirst()){
-                    List<Feed> cached = new ArrayList<Feed>();
-                    do {
-                        cached.add(mPersistableFeeds.loadFrom(feedCursor));
-                    }
-                    while (feedCursor.moveToNext());
-                    category.setFeeds(cached);
-                }
-            } finally {
-                feedCursor.close();
-            }
-        }
+    /**
+     * @param offset index of the first category column
+     */
+    public static Category loadFromCursor(Cursor cursor, int offset) {
+        Category category = new Category();
+        category.setId(cursor.getLong(offset));
+        category.setColorId(cursor.getInt(offset + 1));
+        category.setName(cursor.getString(offset + 2));
+        category.setLastUpdateTime(cursor.getLong(offset + 3));
+        category.setVisible(cursor.getInt(offset + 4) == 1);
+        category.setOrder(cursor.getInt(offset + 5));
         return category;
     }
 
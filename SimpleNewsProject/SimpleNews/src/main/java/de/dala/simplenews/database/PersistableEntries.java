@@ -1,10 +1,10 @@
 package de.dala.simplenews.database;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import de.dala.simplenews.common.Entry;
@@ -20,6 +20,9 @@ public class PersistableEntries implements IPersistableObject<Entry>{
     private Long mFeedId;
     private Long mEntryId;
     private Boolean mOnlyVisible;
+    private Long mLastDate;
+    private Long mLastId;
+    private Integer mLimit;
     private SQLiteDatabase db;
 
     private static final String entryTableShortName = "entryTable";
@@ -34,6 +37,18 @@ public class PersistableEntries implements IPersistableObject<Entry>{
         db = DatabaseHandler.getDbInstance();
     }
 
+    /**
+     * Limits the cursor to the next {@code limit} entries after the given one, in the order of
+     * {@link #getCursor()}. The first page is requested with {@code null} date and id. Entries
+     * without date come after all others, they are paged with a {@code null} date and the id of
+     * the last one, see {@link IDatabaseHandler#getEntriesPage(Long, Boolean, Long, Long, int)}.
+     */
+    public void setPage(Long lastDate, Long lastId, int limit) {
+        mLastDate = lastDate;
+        mLastId = lastId;
+        mLimit = limit;
+    }
+
     protected String getQuery(){
         String query = null;
         if (mCategoryId != null) {
@@ -55,15 +70,47 @@ public class PersistableEntries implements IPersistableObject<Entry>{
 
     @Override
     public Cursor getCursor() {
-        String entryQuery = "SELECT * FROM " + TABLE_ENTRY + " " + entryTableShortName
+        return db.rawQuery(getCursorQuery(), null);
+    }
+
+    /**
+     * @return the statement behind {@link #getCursor()}
+     */
+    public String getCursorQuery() {
+        return "SELECT * FROM " + TABLE_ENTRY + " " + entryTableShortName
                 + " INNER JOIN "
                 + TABLE_FEED + " " + feedTableShortName + " " +
                 " ON " + entryTableShortName+ "." + ENTRY_FEED_ID
                 +"=" + feedTableShortName +"." + FEED_ID
-                +" WHERE " + getQuery()
-                + " ORDER BY " + ENTRY_DATE + " DESC";
+                +" WHERE " + getPageQuery()
+                + " ORDER BY " + getPageOrder();
+    }
 
-        return db.rawQuery(entryQuery, null);
+    private String getPageQuery() {
+        String query = getQuery();
+        if (mLastId != null) {
+            String date = entryTableShortName + "." + ENTRY_DATE;
+            String id = entryTableShortName + "." + ENTRY_ID;
+            if (mLastDate != null) {
+                // keyset on (date, _id), the first condition lets the date index skip the seen entries
+                query = concatenateQueries(query, date + " <= " + mLastDate);
+                query = concatenateQueries(query, "(" + date + " < " + mLastDate + " OR " + id + " < " + mLastId + ")");
+            } else {
+                // NULL sorts last in the descending order and matches no comparison
+                query = concatenateQueries(query, date + " IS NULL");
+                query = concatenateQueries(query, id + " < " + mLastId);
+            }
+        }
+        return query;
+    }
+
+    private String getPageOrder() {
+        if (mLimit == null) {
+            return ENTRY_DATE + " DESC";
+        }
+        return entryTableShortName + "." + ENTRY_DATE + " DESC, "
+                + entryTableShortName + "." + ENTRY_ID + " DESC"
+                + " LIMIT " + mLimit;
     }
 
     @Override
@@ -72,24 +119,36 @@ public class PersistableEntries implements IPersistableObject<Entry>{
     }
 
     public static Entry loadFromCursor(Cursor cursor){
+        return loadFromCursor(cursor, 0);
+    }
+
+    /**
+     * @param offset index of the first entry column
+     */
+    public static Entry loadFromCursor(Cursor cursor, int offset){
         Entry entry = new Entry();
-        entry.setId(cursor.getLong(0));
-        entry.setCategoryId(cursor.getLong(1));
-        entry.setFeedId(cursor.getLong(2));
-        entry.setTitle(cursor.getString(3));
-        entry.setDescription(cursor.getString(4));
-        entry.setDate(cursor.getLong(5));
-        entry.setSrcName(cursor.getString(6));
-        entry.setLink(cursor.getString(7));
-        entry.setShortenedLink(cursor.getString(8));
-        entry.setImageLink(cursor.getString(9));
-        entry.setVisible(cursor.getInt(10) == 1);
-        entry.setVisitedDate(cursor.getLong(11));
-        entry.setFavoriteDate(cursor.getLong(12));
-        entry.setExpanded(cursor.getInt(13) == 1);
+        entry.setId(cursor.getLong(offset));
+        entry.setCategoryId(cursor.getLong(offset + 1));
+        entry.setFeedId(cursor.getLong(offset + 2));
+        entry.setTitle(cursor.getString(offset + 3));
+        entry.setDescription(cursor.getString(offset + 4));
+        entry.setDate(cursor.getLong(offset + 5));
+        entry.setSrcName(cursor.getString(offset + 6));
+        entry.setLink(cursor.getString(offset + 7));
+        entry.setShortenedLink(cursor.getString(offset + 8));
+        entry.setImageLink(cursor.getString(offset + 9));
+        entry.setVisible(cursor.getInt(offset + 10) == 1);
+        entry.setVisitedDate(cursor.getLong(offset + 11));
+        entry.setFavoriteDate(cursor.getLong(offset + 12));
+        entry.setExpanded(cursor.getInt(offset + 13) == 1);
         return entry;
     }
 
+    /**
+     * Stores all items in one transaction. An item without id whose link is already known in its
+     * category is not added again: only its content is refreshed, the read, favorite and visibility
+     * state of the stored entry are kept and the item gets the stored id.
+     */
     @Override
     public long[] store(List<Entry> items) {
         if (items == null){
@@ -97,50 +156,105 @@ public class PersistableEntries implements IPersistableObject<Entry>{
         }
         long[] ids = new long[items.size()];
         int current = 0;
-        for (Entry entry : items) {
-            List<Entry> similarEntries = getSimilarEntries(entry);
-
-            // check if item not already added, if so, only continue if id is equal
-            if (similarEntries != null && !similarEntries.isEmpty()) {
-                boolean shouldUpdate = false;
-                for (Entry sEntry : similarEntries) {
-                    if (sEntry.getId().equals(entry.getId())) {
-                        shouldUpdate = true;
+        SQLiteStatement findStatement = db.compileStatement("SELECT " + ENTRY_ID + " FROM " + TABLE_ENTRY
+                + " WHERE " + ENTRY_CATEGORY_ID + "=? AND " + ENTRY_URL + "=?");
+        SQLiteStatement refreshStatement = db.compileStatement("UPDATE " + TABLE_ENTRY + " SET "
+                + ENTRY_FEED_ID + "=?, "
+                + ENTRY_TITLE + "=?, "
+                + ENTRY_DESCRIPTION + "=?, "
+                + ENTRY_DATE + "=?, "
+                + ENTRY_SRC_NAME + "=?, "
+                + ENTRY_IMAGE_URL + "=?"
+                + " WHERE " + ENTRY_ID + "=?");
+        SQLiteStatement replaceStatement = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_ENTRY + "("
+                + ENTRY_ID + ", "
+                + ENTRY_CATEGORY_ID + ", "
+                + ENTRY_FEED_ID + ", "
+                + ENTRY_TITLE + ", "
+                + ENTRY_DESCRIPTION + ", "
+                + ENTRY_DATE + ", "
+                + ENTRY_SRC_NAME + ", "
+                + ENTRY_URL + ", "
+                + ENTRY_SHORTENED_URL + ", "
+                + ENTRY_IMAGE_URL + ", "
+                + ENTRY_VISIBLE + ", "
+                + ENTRY_VISITED_DATE + ", "
+                + ENTRY_FAVORITE_DATE + ", "
+                + ENTRY_IS_EXPANDED + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (Entry entry : items) {
+                Long categoryId = entry.getCategoryId() != null ? entry.getCategoryId() : mCategoryId;
+                Long feedId = entry.getFeedId() != null ? entry.getFeedId() : mFeedId;
+
+                Long existingId = null;
+                if (entry.getId() == null && categoryId != null && entry.getLink() != null) {
+                    findStatement.bindLong(1, categoryId);
+                    findStatement.bindString(2, entry.getLink());
+                    try {
+                        existingId = findStatement.simpleQueryForLong();
+                    } catch (SQLiteDoneException e) {
+                        // not stored yet
                     }
-                    break;
                 }
-                if (!shouldUpdate) {
-                    return null;
+
+                long rowId;
+                if (existingId != null) {
+                    bind(refreshStatement, 1, feedId);
+                    bind(refreshStatement, 2, entry.getTitle());
+                    bind(refreshStatement, 3, entry.getDescription());
+                    bind(refreshStatement, 4, entry.getDate());
+                    bind(refreshStatement, 5, entry.getSrcName());
+                    bind(refreshStatement, 6, entry.getImageLink());
+                    refreshStatement.bindLong(7, existingId);
+                    refreshStatement.execute();
+                    rowId = existingId;
+                } else {
+                    bind(replaceStatement, 1, entry.getId());
+                    bind(replaceStatement, 2, categoryId);
+                    bind(replaceStatement, 3, feedId);
+                    bind(replaceStatement, 4, entry.getTitle());
+                    bind(replaceStatement, 5, entry.getDescription());
+                    bind(replaceStatement, 6, entry.getDate());
+                    bind(replaceStatement, 7, entry.getSrcName());
+                    bind(replaceStatement, 8, entry.getLink());
+                    bind(replaceStatement, 9, entry.getShortenedLink());
+                    bind(replaceStatement, 10, entry.getImageLink());
+                    replaceStatement.bindLong(11, entry.isVisible() ? 1 : 0);
+                    bind(replaceStatement, 12, entry.getVisitedDate());
+                    bind(replaceStatement, 13, entry.getFavoriteDate());
+                    replaceStatement.bindLong(14, entry.isExpanded() ? 1 : 0);
+                    rowId = replaceStatement.executeInsert();
                 }
+                ids[current++] = rowId;
+                entry.setId(rowId);
             }
-            ContentValues values = new ContentValues();
-            values.put(ENTRY_ID, entry.getId());
-            Long categoryId = entry.getCategoryId() != null ? entry.getCategoryId() : mCategoryId;
-            Long feedId = entry.getFeedId() != null ? entry.getFeedId() : mFeedId;
-            values.put(ENTRY_CATEGORY_ID, categoryId);
-            values.put(ENTRY_FEED_ID, feedId);
-            values.put(ENTRY_TITLE, entry.getTitle());
-            values.put(ENTRY_DESCRIPTION, entry.getDescription());
-            values.put(ENTRY_DATE, entry.getDate());
-            values.put(ENTRY_SRC_NAME, entry.getSrcName());
-            values.put(ENTRY_URL, entry.getLink());
-            values.put(ENTRY_SHORTENED_URL, entry.getShortenedLink());
-            values.put(ENTRY_IMAGE_URL, entry.getImageLink());
-            values.put(ENTRY_VISIBLE, entry.isVisible() ? 1 : 0);
-            values.put(ENTRY_VISITED_DATE, entry.getVisitedDate());
-            values.put(ENTRY_FAVORITE_DATE, entry.getFavoriteDate());
-            values.put(ENTRY_IS_EXPANDED, entry.isExpanded() ? 1 : 0);
-
-                /*
-                 * Inserting Row
-                 */
-            long rowId = db.replace(TABLE_ENTRY, null, values);
-            ids[current++] = rowId;
-            entry.setId(rowId);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            findStatement.close();
+            refreshStatement.close();
+            replaceStatement.close();
         }
         return ids;
     }
 
+    private static void bind(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, int index, Long value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, value);
+        }
+    }
+
     @Override
     public void delete() {
         String query = null;
@@ -157,29 +271,4 @@ public class PersistableEntries implements IPersistableObject<Entry>{
         query = concatenateQueries(query, ENTRY_VISITED_DATE + " is null");
         db.delete(TABLE_ENTRY, query, null);
     }
-
-    public List<Entry> getSimilarEntries(Entry oldEntry) {
-        List<Entry> entries = new ArrayList<Entry>();
-        if (oldEntry != null) {
-            String desc = oldEntry.getLink() == null ? "" : oldEntry.getLink();
-            Cursor cursor = db.rawQuery("SELECT * FROM " +
-                            TABLE_ENTRY + " WHERE " +
-                            ENTRY_URL + "=?",
-                    new String[]{desc}
-            );
-            /*
-             * looping through all rows and adding to list
-             */
-            if (cursor.moveToFirst()) {
-                do {
-                    Entry entry = loadFrom(cursor);
-                    if (entry.getId() != oldEntry.getId()) {
-                        entries.add(entry);
-                    }
-                } while (cursor.moveToNext());
-            }
-            cursor.close();
-        }
-        return entries;
-    }
 }
@@ -3,6 +3,7 @@ package de.dala.simplenews.database;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -34,6 +35,13 @@ public class PersistableFeeds implements IPersistableObject<Feed>{
 
     @Override
     public Cursor getCursor() {
+        return db.rawQuery(getCursorQuery(), null);
+    }
+
+    /**
+     * @return the statement behind {@link #getCursor()}
+     */
+    public String getCursorQuery() {
         String query = null;
         if (mCategoryId != null){
             query = concatenateQueries(query, FEED_CATEGORY_ID + " = " + mCategoryId);
@@ -44,20 +52,13 @@ public class PersistableFeeds implements IPersistableObject<Feed>{
         if (mOnlyVisible != null){
             query = concatenateQueries(query, FEED_VISIBLE + "=" + (mOnlyVisible ? "1" : "0"));
         }
-        return db.query(TABLE_FEED, null,
+        return SQLiteQueryBuilder.buildQueryString(false, TABLE_FEED, null,
                 query, null, null, null, null);
     }
 
     @Override
     public Feed loadFrom(Cursor cursor) {
-        Feed feed = new Feed();
-        feed.setId(cursor.getLong(0));
-        feed.setCategoryId(cursor.getLong(1));
-        feed.setTitle(cursor.getString(2));
-        feed.setDescription(cursor.getString(3));
-        feed.setXmlUrl(cursor.getString(4));
-        feed.setVisible(cursor.getInt(5) == 1);
-        feed.setHtmlUrl(cursor.getString(6));
+        Feed feed = loadFromCursor(cursor, 0);
 
         if (mExcludeEntries != null && !mExcludeEntries) {
             PersistableEntries mPersistableEntries = getPersistableEntries(feed.getCategoryId(), feed.getId());
@@ -78,6 +79,29 @@ public class PersistableFeeds implements IPersistableObject<Feed>{
         return feed;
     }
 
+    /**
+     * @param offset index of the first feed column
+     */
+    public static Feed loadFromCursor(Cursor cursor, int offset) {
+        Feed feed = new Feed();
+        feed.setId(cursor.getLong(offset));
+        feed.setCategoryId(cursor.getLong(offset + 1));
+        feed.setTitle(cursor.getString(offset + 2));
+        feed.setDescription(cursor.getString(offset + 3));
+        feed.setXmlUrl(cursor.getString(offset + 4));
+        feed.setVisible(cursor.getInt(offset + 5) == 1);
+        feed.setHtmlUrl(cursor.getString(offset + 6));
+        feed.setEtag(cursor.getString(offset + 7));
+        feed.setLastModified(cursor.getString(offset + 8));
+        feed.setNextUpdate(cursor.isNull(offset + 9) ? null : cursor.getLong(offset + 9));
+        feed.setUpdateInterval(cursor.isNull(offset + 10) ? null : cursor.getLong(offset + 10));
+        feed.setFailureCount(cursor.getInt(offset + 11));
+        feed.setWatermarkLink(cursor.getString(offset + 12));
+        feed.setWatermarkDate(cursor.isNull(offset + 13) ? null : cursor.getLong(offset + 13));
+        feed.setFullRefresh(cursor.isNull(offset + 14) ? null : cursor.getLong(offset + 14));
+        return feed;
+    }
+
     @Override
     public long[] store(List<Feed> items) {
         if (items == null){
@@ -97,6 +121,14 @@ public class PersistableFeeds implements IPersistableObject<Feed>{
             values.put(FEED_URL, feed.getXmlUrl());
             values.put(FEED_VISIBLE, feed.isVisible() ? 1 : 0);
             values.put(FEED_HTML_URL, feed.getHtmlUrl());
+            values.put(FEED_ETAG, feed.getEtag());
+            values.put(FEED_LAST_MODIFIED, feed.getLastModified());
+            values.put(FEED_NEXT_UPDATE, feed.getNextUpdate());
+            values.put(FEED_UPDATE_INTERVAL, feed.getUpdateInterval());
+            values.put(FEED_FAILURE_COUNT, feed.getFailureCount());
+            values.put(FEED_WATERMARK_LINK, feed.getWatermarkLink());
+            values.put(FEED_WATERMARK_DATE, feed.getWatermarkDate());
+            values.put(FEED_FULL_REFRESH, feed.getFullRefresh());
 
             /*
 		     * Inserting Row
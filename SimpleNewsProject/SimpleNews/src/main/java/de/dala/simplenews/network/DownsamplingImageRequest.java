@@ -0,0 +1,139 @@
+package de.dala.simplenews.network;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.Log;
+
+import com.android.volley.Cache;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+/**
+ * Loads an image and decodes it no larger than needed for the given size: the image is sampled
+ * down by the largest power of two which keeps it at least as large as the target. The decode
+ * draws into a bitmap of the {@link ImageMemoryCache} which is no longer shown, if one fits.
+ * <p/>
+ * Responses are kept in the image disk cache for at least {@link #MIN_CACHE_TIME}, images of a
+ * link rarely change and most servers of feed images send no caching headers.
+ */
+public class DownsamplingImageRequest extends Request<Bitmap> {
+    private static final String TAG = "DownsamplingImageRequest";
+    private static final long MIN_CACHE_TIME = 1000 * 60 * 60 * 24 * 7; // one week
+    /**
+     * Decodes one image at a time, as the volley image request does, to limit the memory peak
+     */
+    private static final Object DECODE_LOCK = new Object();
+
+    private final Response.Listener<Bitmap> mListener;
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    private final ImageMemoryCache mMemoryCache;
+    private final Priority mPriority;
+    private volatile int mResponseBytes;
+
+    /**
+     * @param maxWidth  width the image is shown with, {@code 0} for the width of the image
+     * @param maxHeight height the image is shown with, {@code 0} for the height of the image
+     */
+    public DownsamplingImageRequest(String url, int maxWidth, int maxHeight, Priority priority, ImageMemoryCache memoryCache,
+                                    Response.Listener<Bitmap> listener, Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        mListener = listener;
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mPriority = priority;
+        mMemoryCache = memoryCache;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    protected Response<Bitmap> parseNetworkResponse(NetworkResponse response) {
+        mResponseBytes = response.data.length;
+        Bitmap bitmap;
+        synchronized (DECODE_LOCK) {
+            try {
+                bitmap = decode(response.data);
+            } catch (OutOfMemoryError e) {
+                Log.e(TAG, String.format("Could not decode %s", getUrl()), e);
+                return Response.error(new ParseError(e));
+            }
+        }
+        if (bitmap == null) {
+            return Response.error(new ParseError(response));
+        }
+        return Response.success(bitmap, getCacheEntry(response));
+    }
+
+    private Bitmap decode(byte[] data) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, mMaxWidth, mMaxHeight);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            // mutable, so the bitmap can be reused once it drops out of the memory cache
+            options.inMutable = true;
+            Bitmap reusable = mMemoryCache.getReusableBitmap(options);
+            if (reusable != null) {
+                options.inBitmap = reusable;
+                try {
+                    return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+                } catch (IllegalArgumentException e) {
+                    // the bitmap did not fit after all
+                    options.inBitmap = null;
+                }
+            }
+        }
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /**
+     * @return the largest power of two which keeps the image at least as large as the target
+     */
+    static int getSampleSize(int width, int height, int maxWidth, int maxHeight) {
+        int sampleSize = 1;
+        if (maxWidth <= 0 && maxHeight <= 0) {
+            return sampleSize;
+        }
+        while ((maxWidth <= 0 || width / (sampleSize * 2) >= maxWidth)
+                && (maxHeight <= 0 || height / (sampleSize * 2) >= maxHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Cache.Entry getCacheEntry(NetworkResponse response) {
+        Cache.Entry entry = HttpHeaderParser.parseCacheHeaders(response);
+        if (entry == null) {
+            return null;
+        }
+        long minExpiry = System.currentTimeMillis() + MIN_CACHE_TIME;
+        entry.softTtl = Math.max(entry.softTtl, minExpiry);
+        entry.ttl = Math.max(entry.ttl, minExpiry);
+        return entry;
+    }
+
+    /**
+     * @return the size of the encoded image, {@code 0} until it has been loaded
+     */
+    public int getResponseBytes() {
+        return mResponseBytes;
+    }
+
+    @Override
+    protected void deliverResponse(Bitmap response) {
+        mListener.onResponse(response);
+    }
+}
@@ -0,0 +1,102 @@
+package de.dala.simplenews.network;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+
+import org.apache.http.HttpStatus;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Conditional GET for a feed. Sends the validators of the last response and delivers a
+ * {@link Result} which either holds the new body and validators or is marked as not modified.
+ * The body is kept as the raw bytes read from the network, so the XML parser can detect the
+ * encoding itself and no decoded copy of the feed is ever created.
+ */
+public class FeedRequest extends Request<FeedRequest.Result> {
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private final Response.Listener<Result> mListener;
+    private final String mEtag;
+    private final String mLastModified;
+    private final Priority mPriority;
+
+    public FeedRequest(String url, String etag, String lastModified, Priority priority,
+                       Response.Listener<Result> listener, Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        mListener = listener;
+        mEtag = etag;
+        mLastModified = lastModified;
+        mPriority = priority;
+        // validators are handled by the caller, the volley cache would only answer 304s itself
+        setShouldCache(false);
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        Map<String, String> headers = new HashMap<String, String>();
+        if (mEtag != null) {
+            headers.put(HEADER_IF_NONE_MATCH, mEtag);
+        }
+        if (mLastModified != null) {
+            headers.put(HEADER_IF_MODIFIED_SINCE, mLastModified);
+        }
+        return headers;
+    }
+
+    @Override
+    protected Response<Result> parseNetworkResponse(NetworkResponse response) {
+        if (response.statusCode == HttpStatus.SC_NOT_MODIFIED) {
+            return Response.success(new Result(null, mEtag, mLastModified, true), null);
+        }
+        String etag = getHeader(response.headers, HEADER_ETAG);
+        String lastModified = getHeader(response.headers, HEADER_LAST_MODIFIED);
+        return Response.success(new Result(response.data, etag, lastModified, false), null);
+    }
+
+    @Override
+    protected void deliverResponse(Result response) {
+        mListener.onResponse(response);
+    }
+
+    private static String getHeader(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        // header names are case-insensitive
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    public static class Result {
+        /**
+         * Undecoded feed body, {@code null} if not modified
+         */
+        public final byte[] data;
+        public final String etag;
+        public final String lastModified;
+        public final boolean notModified;
+
+        public Result(byte[] data, String etag, String lastModified, boolean notModified) {
+            this.data = data;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.notModified = notModified;
+        }
+    }
+}
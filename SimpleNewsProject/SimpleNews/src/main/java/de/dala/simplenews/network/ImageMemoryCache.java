@@ -0,0 +1,173 @@
+package de.dala.simplenews.network;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decoded images by url and size, limited by the bytes of the bitmaps instead of their number.
+ * <p/>
+ * Bitmaps which drop out of the cache are reused by later decodes, unless a view still shows
+ * them: views {@link #retain(Bitmap)} the bitmap they show and {@link #release(Bitmap)} it when
+ * they show something else. Reuse needs Honeycomb, before KitKat only for a bitmap of exactly the
+ * same size.
+ * <p/>
+ * Must be used from the UI thread, except {@link #getReusableBitmap(BitmapFactory.Options)}
+ */
+public class ImageMemoryCache {
+    private static final int MAX_REUSABLE_BITMAPS = 8;
+
+    private final LruCache<String, Bitmap> mCache;
+    /**
+     * Number of views showing a bitmap
+     */
+    private final Map<Bitmap, Integer> mDisplayCounts = new HashMap<Bitmap, Integer>();
+    /**
+     * Shown bitmaps which are not cached anymore, they become reusable once no view shows them
+     */
+    private final Set<Bitmap> mEvicted = new HashSet<Bitmap>();
+    private final List<SoftReference<Bitmap>> mReusable = new ArrayList<SoftReference<Bitmap>>();
+
+    /**
+     * @param maxBytes size of all cached bitmaps
+     */
+    public ImageMemoryCache(int maxBytes) {
+        mCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return getByteCount(bitmap);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) {
+                    onRemoved(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return an eighth of the heap the app may use
+     */
+    public static int getDefaultSize() {
+        return (int) (Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    public Bitmap get(String key) {
+        return mCache.get(key);
+    }
+
+    public void put(String key, Bitmap bitmap) {
+        mCache.put(key, bitmap);
+    }
+
+    /**
+     * A view started showing the bitmap, it is not reused until {@link #release(Bitmap)}.
+     */
+    public void retain(Bitmap bitmap) {
+        Integer count = mDisplayCounts.get(bitmap);
+        mDisplayCounts.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * A view stopped showing the bitmap.
+     */
+    public void release(Bitmap bitmap) {
+        Integer count = mDisplayCounts.get(bitmap);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            mDisplayCounts.put(bitmap, count - 1);
+            return;
+        }
+        mDisplayCounts.remove(bitmap);
+        if (mEvicted.remove(bitmap)) {
+            addReusable(bitmap);
+        }
+    }
+
+    private void onRemoved(Bitmap bitmap) {
+        if (mDisplayCounts.containsKey(bitmap)) {
+            mEvicted.add(bitmap);
+        } else {
+            addReusable(bitmap);
+        }
+    }
+
+    private void addReusable(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB || !bitmap.isMutable()) {
+            return;
+        }
+        synchronized (mReusable) {
+            if (mReusable.size() >= MAX_REUSABLE_BITMAPS) {
+                mReusable.remove(0);
+            }
+            mReusable.add(new SoftReference<Bitmap>(bitmap));
+        }
+    }
+
+    /**
+     * Takes a bitmap the decoding described by the options can draw into.
+     * <p/>
+     * May be called from a worker thread
+     *
+     * @param options bounds and sample size of the image to decode
+     * @return the bitmap or {@code null} if there is no fitting one
+     */
+    public Bitmap getReusableBitmap(BitmapFactory.Options options) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return null;
+        }
+        synchronized (mReusable) {
+            Iterator<SoftReference<Bitmap>> iterator = mReusable.iterator();
+            while (iterator.hasNext()) {
+                Bitmap bitmap = iterator.next().get();
+                if (bitmap == null || bitmap.isRecycled()) {
+                    iterator.remove();
+                } else if (canReuse(bitmap, options)) {
+                    iterator.remove();
+                    return bitmap;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean canReuse(Bitmap bitmap, BitmapFactory.Options options) {
+        int sampleSize = Math.max(1, options.inSampleSize);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            int width = (options.outWidth + sampleSize - 1) / sampleSize;
+            int height = (options.outHeight + sampleSize - 1) / sampleSize;
+            return width * height * getBytesPerPixel(bitmap.getConfig()) <= bitmap.getAllocationByteCount();
+        }
+        return sampleSize == 1 && bitmap.getWidth() == options.outWidth && bitmap.getHeight() == options.outHeight;
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ARGB_8888) {
+            return 4;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static int getByteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
@@ -0,0 +1,150 @@
+package de.dala.simplenews.network;
+
+import android.graphics.Bitmap;
+
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads images for views: from the {@link ImageMemoryCache}, else from the image disk cache or the
+ * network through a {@link DownsamplingImageRequest}. Callers asking for the same image and size
+ * at the same time share one request.
+ * <p/>
+ * Must be used from the UI thread
+ */
+public class ImagePipeline {
+
+    public interface Listener {
+        void onLoaded(Bitmap bitmap);
+
+        void onFailed();
+    }
+
+    private final ImageMemoryCache mMemoryCache;
+    private final Map<String, InFlight> mInFlights = new HashMap<String, InFlight>();
+
+    public ImagePipeline(ImageMemoryCache memoryCache) {
+        mMemoryCache = memoryCache;
+    }
+
+    public ImageMemoryCache getMemoryCache() {
+        return mMemoryCache;
+    }
+
+    /**
+     * @return the image if it has been decoded for the size before, else {@code null}
+     */
+    public Bitmap getCached(String url, int maxWidth, int maxHeight) {
+        return mMemoryCache.get(getCacheKey(url, maxWidth, maxHeight));
+    }
+
+    /**
+     * Loads an image which is not in the memory cache, see {@link #getCached(String, int, int)}.
+     *
+     * @param maxWidth  width the image is shown with, {@code 0} for the width of the image
+     * @param maxHeight height the image is shown with, {@code 0} for the height of the image
+     * @param requestClass {@link RequestClass#IMAGE} or {@link RequestClass#PREFETCH_IMAGE}, a
+     *                     caller joining a running request keeps its class
+     * @return the call, to be cancelled when the caller is no longer interested
+     */
+    public Call load(String url, int maxWidth, int maxHeight, RequestClass requestClass, Listener listener) {
+        final String key = getCacheKey(url, maxWidth, maxHeight);
+        InFlight inFlight = mInFlights.get(key);
+        if (inFlight == null) {
+            inFlight = new InFlight(key);
+            final InFlight request = inFlight;
+            inFlight.request = new DownsamplingImageRequest(url, maxWidth, maxHeight, requestClass.getPriority(), mMemoryCache,
+                    new Response.Listener<Bitmap>() {
+                        @Override
+                        public void onResponse(Bitmap bitmap) {
+                            mMemoryCache.put(key, bitmap);
+                            for (Call call : finish(request)) {
+                                call.listener.onLoaded(bitmap);
+                            }
+                        }
+                    }, new Response.ErrorListener() {
+                        @Override
+                        public void onErrorResponse(VolleyError error) {
+                            for (Call call : finish(request)) {
+                                call.listener.onFailed();
+                            }
+                        }
+                    }
+            );
+            mInFlights.put(key, inFlight);
+            NetworkCommunication.addRequest(inFlight.request, requestClass);
+        }
+        Call call = new Call(inFlight, listener);
+        inFlight.calls.add(call);
+        return call;
+    }
+
+    private List<Call> finish(InFlight inFlight) {
+        if (mInFlights.get(inFlight.key) == inFlight) {
+            mInFlights.remove(inFlight.key);
+        }
+        List<Call> calls = new ArrayList<Call>(inFlight.calls);
+        inFlight.calls.clear();
+        return calls;
+    }
+
+    private void cancel(Call call) {
+        InFlight inFlight = call.inFlight;
+        if (!inFlight.calls.remove(call) || !inFlight.calls.isEmpty()) {
+            return;
+        }
+        // nobody waits for the image anymore
+        if (mInFlights.get(inFlight.key) == inFlight) {
+            mInFlights.remove(inFlight.key);
+        }
+        inFlight.request.cancel();
+    }
+
+    private static String getCacheKey(String url, int maxWidth, int maxHeight) {
+        return new StringBuilder(url.length() + 12).append("#W").append(maxWidth)
+                .append("#H").append(maxHeight).append(url).toString();
+    }
+
+    /**
+     * Interest of one caller in an image.
+     */
+    public class Call {
+        private final InFlight inFlight;
+        private final Listener listener;
+
+        private Call(InFlight inFlight, Listener listener) {
+            this.inFlight = inFlight;
+            this.listener = listener;
+        }
+
+        /**
+         * @return the size of the encoded image, {@code 0} until it has been loaded
+         */
+        public int getResponseBytes() {
+            return inFlight.request.getResponseBytes();
+        }
+
+        /**
+         * The listener is not called anymore. The request is stopped if no other caller waits
+         * for it.
+         */
+        public void cancel() {
+            ImagePipeline.this.cancel(this);
+        }
+    }
+
+    private static class InFlight {
+        private final String key;
+        private final List<Call> calls = new ArrayList<Call>();
+        private DownsamplingImageRequest request;
+
+        private InFlight(String key) {
+            this.key = key;
+        }
+    }
+}
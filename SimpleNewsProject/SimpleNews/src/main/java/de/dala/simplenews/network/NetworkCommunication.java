@@ -1,47 +1,85 @@
 package de.dala.simplenews.network;
 
-import com.android.volley.DefaultRetryPolicy;
 import com.android.volley.Request;
 import com.android.volley.Response;
-import com.android.volley.RetryPolicy;
 import com.android.volley.toolbox.StringRequest;
 
 
 public class NetworkCommunication {
 
-    private static final int TIMEOUT_MS = 5000;
-    private static final int MAX_RETRIES = 2;
-    private static final int BACKOFF_MULT = 2;
+    /**
+     * Sends the request through the queue of its class with a retry policy of the class. The
+     * priority is part of the request, see {@link RequestClass#getPriority()}.
+     */
+    public static void addRequest(Request<?> request, RequestClass requestClass) {
+        request.setRetryPolicy(requestClass.newRetryPolicy());
+        VolleySingleton.getRequestQueue(requestClass).add(request);
+    }
+
+    /**
+     * Cancels every pending feed or OPML request with the given tag, none of their listeners is
+     * called anymore.
+     */
+    public static void cancelRequests(Object tag) {
+        VolleySingleton.getRequestQueue().cancelAll(tag);
+    }
 
-    private static RetryPolicy myRetryPolicy = new DefaultRetryPolicy(TIMEOUT_MS,
-            MAX_RETRIES,
-            BACKOFF_MULT);
-    private static boolean customizedPolicy = true;
 
-    public static void addRequest(Request<?> request) {
-        if (customizedPolicy) {
-            request.setRetryPolicy(myRetryPolicy);
-        }
-        VolleySingleton.getRequestQueue().add(request);
+    public static void loadRSSFeed(String serverURL, Response.Listener<FeedRequest.Result> successListener,
+                                   Response.ErrorListener errorListener) {
+        loadRSSFeed(serverURL, null, null, successListener, errorListener);
     }
 
+    /**
+     * Loads a feed conditionally for the user, who waits for it. A response without changes
+     * since the given validators is delivered as a {@link FeedRequest.Result} marked as not modified.
+     */
+    public static void loadRSSFeed(String serverURL, String etag, String lastModified,
+                                   Response.Listener<FeedRequest.Result> successListener,
+                                   Response.ErrorListener errorListener) {
+        loadRSSFeed(serverURL, etag, lastModified, null, RequestClass.VISIBLE_FEED, successListener, errorListener);
+    }
 
-    public static void loadRSSFeed(String serverURL, Response.Listener<String> successListener,
+    /**
+     * @param tag          cancels the request together with the others of the tag, see {@link #cancelRequests(Object)}
+     * @param requestClass {@link RequestClass#VISIBLE_FEED} or {@link RequestClass#FEED}
+     */
+    public static void loadRSSFeed(String serverURL, String etag, String lastModified, Object tag, RequestClass requestClass,
+                                   Response.Listener<FeedRequest.Result> successListener,
                                    Response.ErrorListener errorListener) {
-        Request request = new StringRequest(serverURL,
+        Request request = new FeedRequest(serverURL, etag, lastModified, requestClass.getPriority(),
                 successListener, errorListener);
-        addRequest(request);
+        request.setTag(tag);
+        addRequest(request, requestClass);
     }
 
     public static void loadShortenedUrl(String url, Response.Listener<String> successListener, Response.ErrorListener errorListener) {
-        Request request = new StringRequest(url, successListener, errorListener);
-        addRequest(request);
+        Request request = new ClassifiedStringRequest(url, RequestClass.SHORTENER, successListener, errorListener);
+        addRequest(request, RequestClass.SHORTENER);
     }
 
     public static void loadOpmlFeeds(String serverURL, Response.Listener<String> successListener,
                                      Response.ErrorListener errorListener) {
-        Request request = new StringRequest(serverURL,
+        Request request = new ClassifiedStringRequest(serverURL, RequestClass.OPML,
                 successListener, errorListener);
-        addRequest(request);
+        addRequest(request, RequestClass.OPML);
+    }
+
+    /**
+     * String request with the priority of its class
+     */
+    private static class ClassifiedStringRequest extends StringRequest {
+        private final Priority mPriority;
+
+        private ClassifiedStringRequest(String url, RequestClass requestClass, Response.Listener<String> listener,
+                                        Response.ErrorListener errorListener) {
+            super(url, listener, errorListener);
+            mPriority = requestClass.getPriority();
+        }
+
+        @Override
+        public Priority getPriority() {
+            return mPriority;
+        }
     }
 }
@@ -0,0 +1,51 @@
+package de.dala.simplenews.network;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.Request;
+import com.android.volley.RetryPolicy;
+
+/**
+ * Kinds of requests with their priority, timeout and retries. Requests of a queue are sent by
+ * priority, so what the user waits for goes before background traffic. Each class is sent
+ * through its own queue, see {@link VolleySingleton#getRequestQueue(RequestClass)}.
+ */
+public enum RequestClass {
+    /**
+     * Feeds of the category on screen and feeds the user is adding
+     */
+    VISIBLE_FEED(Request.Priority.HIGH, 5000, 2, 2f),
+    /**
+     * Feeds refreshed in the background
+     */
+    FEED(Request.Priority.LOW, 5000, 2, 2f),
+    OPML(Request.Priority.HIGH, 10000, 1, 1f),
+    /**
+     * Images of the cards on screen
+     */
+    IMAGE(Request.Priority.NORMAL, 2500, 1, 2f),
+    PREFETCH_IMAGE(Request.Priority.LOW, 5000, 0, 1f),
+    SHORTENER(Request.Priority.LOW, 5000, 1, 1f);
+
+    private final Request.Priority priority;
+    private final int timeoutMs;
+    private final int maxRetries;
+    private final float backoffMultiplier;
+
+    RequestClass(Request.Priority priority, int timeoutMs, int maxRetries, float backoffMultiplier) {
+        this.priority = priority;
+        this.timeoutMs = timeoutMs;
+        this.maxRetries = maxRetries;
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+    public Request.Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return a new policy, a policy counts the attempts of its request and must not be shared
+     */
+    public RetryPolicy newRetryPolicy() {
+        return new DefaultRetryPolicy(timeoutMs, maxRetries, backoffMultiplier);
+    }
+}
@@ -1,34 +1,43 @@
 package de.dala.simplenews.network;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.support.v4.util.LruCache;
 
 import com.android.volley.RequestQueue;
-import com.android.volley.toolbox.ImageLoader;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.HurlStack;
+import com.android.volley.toolbox.NoCache;
 import com.android.volley.toolbox.Volley;
 
+import java.io.File;
+
 public class VolleySingleton {
+    /**
+     * Images get their own disk cache, so they cannot push out the feed responses
+     */
+    private static final String IMAGE_CACHE_DIR = "images";
+    private static final int IMAGE_CACHE_SIZE = 20 * 1024 * 1024;
+    private static final int IMAGE_THREADS = 2;
+    /**
+     * Shortener calls are sent one at a time and never wait for or block a feed
+     */
+    private static final int BACKGROUND_THREADS = 1;
+
     private static VolleySingleton mInstance = null;
     private RequestQueue mRequestQueue;
-    private ImageLoader mImageLoader;
+    private RequestQueue mImageRequestQueue;
+    private RequestQueue mBackgroundRequestQueue;
+    private ImagePipeline mImagePipeline;
 
     private VolleySingleton(Context context) {
         mRequestQueue = Volley.newRequestQueue(context);
-        mImageLoader = new ImageLoader(this.mRequestQueue,
-                new ImageLoader.ImageCache() {
-                    private final LruCache<String, Bitmap> mCache = new LruCache<String, Bitmap>(
-                            10);
-
-                    public void putBitmap(String url, Bitmap bitmap) {
-                        mCache.put(url, bitmap);
-                    }
-
-                    public Bitmap getBitmap(String url) {
-                        return mCache.get(url);
-                    }
-                }
-        );
+        mImageRequestQueue = new RequestQueue(
+                new DiskBasedCache(new File(context.getCacheDir(), IMAGE_CACHE_DIR), IMAGE_CACHE_SIZE),
+                new BasicNetwork(new HurlStack()), IMAGE_THREADS);
+        mImageRequestQueue.start();
+        mBackgroundRequestQueue = new RequestQueue(new NoCache(), new BasicNetwork(new HurlStack()), BACKGROUND_THREADS);
+        mBackgroundRequestQueue.start();
+        mImagePipeline = new ImagePipeline(new ImageMemoryCache(ImageMemoryCache.getDefaultSize()));
     }
 
     public static void init(Context context) {
@@ -43,8 +52,23 @@ public class VolleySingleton {
         return mInstance.mRequestQueue;
     }
 
-    public static ImageLoader getImageLoader() {
-        return mInstance.mImageLoader;
+    /**
+     * @return the queue the requests of the class are sent through
+     */
+    public static RequestQueue getRequestQueue(RequestClass requestClass) {
+        switch (requestClass) {
+            case IMAGE:
+            case PREFETCH_IMAGE:
+                return mInstance.mImageRequestQueue;
+            case SHORTENER:
+                return mInstance.mBackgroundRequestQueue;
+            default:
+                return mInstance.mRequestQueue;
+        }
+    }
+
+    public static ImagePipeline getImagePipeline() {
+        return mInstance.mImagePipeline;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package de.dala.simplenews.service;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Alarms do not survive a reboot, the background refresh is scheduled again once the device
+ * has booted, see {@link UpdateService#schedule(Context)}.
+ */
+public class BootReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            UpdateService.schedule(context);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.dala.simplenews.service;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import de.dala.simplenews.common.Category;
+import de.dala.simplenews.common.Feed;
+import de.dala.simplenews.database.DatabaseHandler;
+import de.dala.simplenews.utilities.CategoryUpdater;
+import de.dala.simplenews.utilities.FeedScheduler;
+
+/**
+ * Refreshes the feeds of all visible categories whose next update as planned by
+ * {@link FeedScheduler} has passed. Woken up regularly by an inexact alarm, see {@link #schedule(Context)}.
+ */
+public class UpdateService extends IntentService {
+    private static final String TAG = "UpdateService";
+    /**
+     * Categories refreshed at the same time
+     */
+    private static final int MAX_PARALLEL_UPDATES = 2;
+    private static final long UPDATE_TIMEOUT_MINUTES = 5;
+
+    public UpdateService() {
+        super(TAG);
+    }
+
+    /**
+     * Starts the regular background refresh, replacing an already scheduled one.
+     */
+    public static void schedule(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent intent = PendingIntent.getService(context, 0, new Intent(context, UpdateService.class), 0);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + AlarmManager.INTERVAL_FIFTEEN_MINUTES,
+                AlarmManager.INTERVAL_FIFTEEN_MINUTES, intent);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        long now = new Date().getTime();
+        List<Category> categories = DatabaseHandler.getInstance().getCategories(null, null, true);
+        final Semaphore updates = new Semaphore(MAX_PARALLEL_UPDATES);
+        final CountDownLatch finished = new CountDownLatch(categories.size());
+
+        for (Category category : categories) {
+            List<Feed> dueFeeds = new ArrayList<Feed>();
+            for (Feed feed : category.getFeeds()) {
+                if (FeedScheduler.isDue(feed, now)) {
+                    dueFeeds.add(feed);
+                }
+            }
+            if (dueFeeds.isEmpty()) {
+                finished.countDown();
+                continue;
+            }
+            try {
+                updates.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            CategoryUpdater updater = new CategoryUpdater(new FinishHandler(updates, finished), category, true, false, this);
+            if (!updater.start(dueFeeds)) {
+                updates.release();
+                finished.countDown();
+            }
+        }
+
+        try {
+            if (!finished.await(UPDATE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                Log.w(TAG, "background refresh did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Log.w(TAG, "background refresh interrupted", e);
+        }
+    }
+
+    /**
+     * Runs on the main looper, as this service's worker thread has none.
+     */
+    private static class FinishHandler extends Handler {
+        private final Semaphore updates;
+        private final CountDownLatch finished;
+
+        private FinishHandler(Semaphore updates, CountDownLatch finished) {
+            super(Looper.getMainLooper());
+            this.updates = updates;
+            this.finished = finished;
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            switch (msg.what) {
+                case CategoryUpdater.RESULT:
+                case CategoryUpdater.CANCEL:
+                case CategoryUpdater.ERROR:
+                    updates.release();
+                    finished.countDown();
+                    break;
+            }
+        }
+    }
+}
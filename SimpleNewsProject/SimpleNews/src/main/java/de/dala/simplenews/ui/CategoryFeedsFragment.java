@@ -36,18 +36,17 @@ import com.nineoldandroids.view.ViewPropertyAnimator;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringWriter;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 
 import androidrss.RSSConfig;
 import androidrss.RSSFault;
 import androidrss.RSSFeed;
-import androidrss.RSSParser;
 import de.dala.simplenews.R;
 import de.dala.simplenews.common.Category;
 import de.dala.simplenews.common.Feed;
 import de.dala.simplenews.database.DatabaseHandler;
+import de.dala.simplenews.network.FeedRequest;
 import de.dala.simplenews.network.NetworkCommunication;
 import de.dala.simplenews.parser.OpmlWriter;
 import de.dala.simplenews.utilities.UIUtils;
@@ -156,11 +155,11 @@ public class CategoryFeedsFragment extends Fragment implements ContextualUndoAda
                         if (UIUtils.isValideUrl(feedUrl)) {
                             crossfade(progress, inputLayout);
 
-                            NetworkCommunication.loadRSSFeed(feedUrl, new Response.Listener<String>() {
+                            NetworkCommunication.loadRSSFeed(feedUrl, new Response.Listener<FeedRequest.Result>() {
                                 @Override
-                                public void onResponse(String result) {
+                                public void onResponse(FeedRequest.Result result) {
                                     try {
-                                        RSSFeed rssFeed = new RSSParser(new RSSConfig()).parse(new ByteArrayInputStream(result.getBytes("UTF-8")));
+                                        RSSFeed rssFeed = new RSSConfig(RSSConfig.Parser.PULL).newParser().parse(new ByteArrayInputStream(result.data));
                                         if (rssFeed.getItems() == null || rssFeed.getItems().isEmpty()) {
                                             invalidFeedUrl(true);
                                         } else {
@@ -178,9 +177,6 @@ public class CategoryFeedsFragment extends Fragment implements ContextualUndoAda
                                     } catch (RSSFault ex) {
                                         ex.printStackTrace();
                                         invalidFeedUrl(true);
-                                    } catch (UnsupportedEncodingException e) {
-                                        e.printStackTrace();
-                                        invalidFeedUrl(true);
                                     }
                                 }
                             }, new Response.ErrorListener() {
@@ -283,14 +279,25 @@ public class CategoryFeedsFragment extends Fragment implements ContextualUndoAda
                         if (UIUtils.isValideUrl(feedUrl)) {
                             crossfade(progress, inputLayout);
 
-                            NetworkCommunication.loadRSSFeed(formattedFeedUrl, new Response.Listener<String>() {
+                            NetworkCommunication.loadRSSFeed(formattedFeedUrl, new Response.Listener<FeedRequest.Result>() {
                                 @Override
-                                public void onResponse(String result) {
+                                public void onResponse(FeedRequest.Result result) {
                                     try {
-                                        RSSFeed rssFeed = new RSSParser(new RSSConfig()).parse(new ByteArrayInputStream(result.getBytes("UTF-8")));
+                                        RSSFeed rssFeed = new RSSConfig(RSSConfig.Parser.PULL).newParser().parse(new ByteArrayInputStream(result.data));
                                         if (rssFeed.getItems() == null || rssFeed.getItems().isEmpty()) {
                                             invalidFeedUrl(true);
                                         } else {
+                                            if (!formattedFeedUrl.equals(feed.getXmlUrl())) {
+                                                // validators and schedule belong to the old url
+                                                feed.setEtag(null);
+                                                feed.setLastModified(null);
+                                                feed.setNextUpdate(null);
+                                                feed.setUpdateInterval(null);
+                                                feed.setFailureCount(0);
+                                                feed.setWatermarkLink(null);
+                                                feed.setWatermarkDate(null);
+                                                feed.setFullRefresh(null);
+                                            }
                                             feed.setXmlUrl(formattedFeedUrl);
                                             if (rssFeed.getTitle() != null) {
                                                 feed.setTitle(rssFeed.getTitle());
@@ -302,9 +309,6 @@ public class CategoryFeedsFragment extends Fragment implements ContextualUndoAda
                                     } catch (RSSFault ex) {
                                         ex.printStackTrace();
                                         invalidFeedUrl(true);
-                                    } catch (UnsupportedEncodingException e) {
-                                        e.printStackTrace();
-                                        invalidFeedUrl(true);
                                     }
                                 }
                             }, new Response.ErrorListener() {
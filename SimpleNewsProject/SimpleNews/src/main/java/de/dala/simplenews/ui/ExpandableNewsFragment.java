@@ -6,7 +6,6 @@ import android.content.Intent;
 import android.content.res.Configuration;
 import android.database.Cursor;
 import android.graphics.drawable.AnimationDrawable;
-import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
@@ -28,8 +27,8 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.ImageView;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -40,26 +39,56 @@ import com.ocpsoft.pretty.time.PrettyTime;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 import de.dala.simplenews.R;
 import de.dala.simplenews.common.Category;
 import de.dala.simplenews.common.Entry;
+import de.dala.simplenews.common.Feed;
 import de.dala.simplenews.database.DatabaseHandler;
+import de.dala.simplenews.database.EntryRow;
 import de.dala.simplenews.database.PersistableEntries;
-import de.dala.simplenews.database.SimpleCursorLoader;
+import de.dala.simplenews.network.VolleySingleton;
+import de.dala.simplenews.database.EntryPageLoader;
 import de.dala.simplenews.utilities.CategoryUpdater;
 import de.dala.simplenews.utilities.ExpandableGridItemCursorAdapter;
+import de.dala.simplenews.utilities.FeedScheduler;
+import de.dala.simplenews.utilities.ImageLoadingPolicy;
+import de.dala.simplenews.utilities.LinkShortener;
+import de.dala.simplenews.utilities.NetworkTextView;
 import de.dala.simplenews.utilities.PrefUtilities;
+import de.dala.simplenews.utilities.RenderedTextCache;
 import de.dala.simplenews.utilities.SparseBooleanArrayParcelable;
 import de.dala.simplenews.utilities.UIUtils;
 
 /**
  * Created by Daniel on 18.12.13.
  */
-public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayoutExtended.OnRefreshListener, SimpleCursorLoader.OnLoadCompleteListener, NewsOverViewFragment.INewsTypeButton {
+public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayoutExtended.OnRefreshListener, EntryPageLoader.OnLoadCompleteListener, NewsOverViewFragment.INewsTypeButton {
     private static final String ARG_CATEGORY = "category";
     private static final String ARG_ENTRY_TYPE = "entryType";
+    private static final int PAGE_SIZE = 30;
+    /**
+     * Remaining items below the last visible one when the next page is loaded
+     */
+    private static final int PAGE_PREFETCH = 10;
+    /**
+     * Entries of finished feeds are shown at most this often while the other feeds still load
+     */
+    private static final long PROGRESSIVE_RELOAD_DELAY = 1000;
+    private static final int FEED_CHECK_NONE = 0;
+    private static final int FEED_CHECK_DUE = 1;
+    private static final int FEED_CHECK_ALL = 2;
     private MyExpandableGridItemAdapter myExpandableListItemAdapter;
+    /**
+     * Which feeds the next entry load reads for a refresh, on its worker thread. The stored
+     * feeds carry the validators, watermarks and schedule of the background refresh.
+     */
+    private volatile int feedCheck = FEED_CHECK_NONE;
+    private volatile List<Feed> feedsToRefresh;
+    private boolean forceRefresh;
+    private boolean showNewsInteraction;
     private ActionMode mActionMode;
     private StaggeredGridView mGridView;
     private SwipeRefreshLayoutExtended mSwipeRefreshLayout;
@@ -72,7 +101,20 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
     private int newsTypeMode;
     private NewsOverViewFragment parentFragment;
 
-    private SimpleCursorLoader simpleCursorLoader;
+    private EntryPageLoader entryLoader;
+    /**
+     * Defers the image requests of the cards while the grid is flung
+     */
+    private final ImageLoadingPolicy imageLoadingPolicy = new ImageLoadingPolicy();
+
+    private final LinkShortener.Listener shortenerListener = new LinkShortener.Listener() {
+        @Override
+        public void onShortened() {
+            if (shareActionProvider != null && mActionMode != null) {
+                shareActionProvider.setShareIntent(createShareIntent());
+            }
+        }
+    };
 
     private TextView emptyText;
     private ImageView emptyImageView;
@@ -119,6 +161,11 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
             if (mActionMode != null) {
                 mActionMode.finish();
             }
+            if (updater != null && updater.isRunning()) {
+                // the user left the category, show what has been stored so far
+                updater.cancel();
+                updateFinished(true);
+            }
         }
     }
 
@@ -150,7 +197,20 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
 
     private void initNewsTypeBar() {
         NewsTypeButtonAnimation animation = new NewsTypeButtonAnimation();
-        animation.init(mGridView, parentFragment.getNewsTypeButton());
+        animation.init(mGridView, parentFragment.getNewsTypeButton(), new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+                imageLoadingPolicy.onScrollStateChanged(scrollState);
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - PAGE_PREFETCH
+                        && entryLoader != null) {
+                    entryLoader.loadNextPage();
+                }
+            }
+        });
     }
 
     private void setEmptyText(boolean isLoading) {
@@ -212,26 +272,57 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
         if (mGridView != null) {
             mGridView.setAdapter(swingBottomInAnimationAdapter);
         }
-        simpleCursorLoader = new SimpleCursorLoader(getActivity()) {
+        entryLoader = new EntryPageLoader(getActivity(), PAGE_SIZE) {
             @Override
             public Cursor loadInBackground() {
-                return getCursorByNewsType(newsTypeMode);
+                Cursor cursor = super.loadInBackground();
+                int check = feedCheck;
+                if (check != FEED_CHECK_NONE) {
+                    feedCheck = FEED_CHECK_NONE;
+                    List<Feed> feeds = DatabaseHandler.getInstance().getFeeds(category.getId(), true);
+                    feedsToRefresh = check == FEED_CHECK_ALL ? feeds : FeedScheduler.getDueFeeds(feeds);
+                }
+                return cursor;
+            }
+
+            @Override
+            public Cursor loadPage(Long lastDate, Long lastId, int limit) {
+                Cursor cursor = getCursorByNewsType(newsTypeMode, lastDate, lastId, limit);
+                if (cursor != null) {
+                    prefetchTitles(cursor);
+                }
+                return cursor;
             }
         };
-        simpleCursorLoader.registerListener(0, this);
+        entryLoader.registerListener(0, this);
         updateColumnCount();
     }
 
-    private Cursor getCursorByNewsType(int type){
+    /**
+     * Renders the titles of a page which is about to be shown, so binding its cards parses no HTML.
+     * <p/>
+     * Runs on a worker thread
+     */
+    private void prefetchTitles(Cursor cursor) {
+        RenderedTextCache cache = RenderedTextCache.getInstance();
+        EntryRow row = new EntryRow();
+        while (cursor.moveToNext()) {
+            row.moveTo(cursor);
+            cache.prefetch(row.getId(), row.getTitle());
+        }
+        cursor.moveToPosition(-1);
+    }
+
+    private Cursor getCursorByNewsType(int type, Long lastDate, Long lastId, int limit){
         switch (type) {
             case NewsOverViewFragment.ALL:
-                return DatabaseHandler.getInstance().getEntriesCursor(category.getId(), true);
+                return DatabaseHandler.getInstance().getEntriesPage(category.getId(), true, lastDate, lastId, limit);
             case NewsOverViewFragment.FAV:
-                return DatabaseHandler.getInstance().getFavoriteEntriesCursor(category.getId());
+                return DatabaseHandler.getInstance().getFavoriteEntriesPage(category.getId(), lastDate, lastId, limit);
             case NewsOverViewFragment.RECENT:
-                return DatabaseHandler.getInstance().getRecentEntriesCursor(category.getId());
+                return DatabaseHandler.getInstance().getRecentEntriesPage(category.getId(), lastDate, lastId, limit);
             case NewsOverViewFragment.UNREAD:
-                return DatabaseHandler.getInstance().getUnreadEntriesCursor(category.getId());
+                return DatabaseHandler.getInstance().getUnreadEntriesPage(category.getId(), lastDate, lastId, limit);
         }
         return null;
     }
@@ -263,11 +354,11 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
         }
     }
 
-    public void refreshFeeds(boolean showNewsInteraction) {
+    public void refreshFeeds(List<Feed> feeds, boolean showNewsInteraction) {
         if (updater == null) {
-            updater = new CategoryUpdater(new CategoryUpdateHandler(), category, true, getActivity());
+            updater = new CategoryUpdater(new CategoryUpdateHandler(), category, true, true, getActivity());
         }
-        if (updater.start()) {
+        if (updater.start(feeds)) {
             if (showNewsInteraction) {
                 parentFragment.showLoadingNews();
             }
@@ -286,7 +377,7 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
         setRefreshActionButtonState(false);
 
         if (success){
-            simpleCursorLoader.startLoading();
+            entryLoader.startLoading();
         }
         setEmptyText(false);
     }
@@ -313,14 +404,16 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
         super.onCreateOptionsMenu(menu, inflater);
     }
 
+    /**
+     * Shows the stored entries and refreshes the feeds afterwards, all of them or the due ones.
+     * Usually the background refresh has already fetched the feeds, its schedule is in the database.
+     */
     private void loadEntries(boolean forceRefresh, boolean showNewsInteraction) {
         setEmptyText(true);
-        long timeForRefresh = PrefUtilities.getInstance().getTimeForRefresh();
-        if (forceRefresh || category.getLastUpdateTime() < new Date().getTime() - timeForRefresh) {
-            refreshFeeds(showNewsInteraction);
-        }else{
-            simpleCursorLoader.startLoading();
-        }
+        this.forceRefresh = forceRefresh;
+        this.showNewsInteraction = showNewsInteraction;
+        feedCheck = forceRefresh ? FEED_CHECK_ALL : FEED_CHECK_DUE;
+        entryLoader.startLoading();
     }
 
     @Override
@@ -338,6 +431,9 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
                 entries.add(selectedItem);
             }
         }
+        if (PrefUtilities.getInstance().shouldShortenLinks()) {
+            setShortenedLinks(entries);
+        }
 
         String finalMessage = TextUtils.join("\n", entries) + " - by SimpleNews";
         Intent shareIntent = new Intent(Intent.ACTION_SEND);
@@ -347,6 +443,29 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
         return shareIntent;
     }
 
+    /**
+     * Uses the known shortened links, the others are shortened in the background and the share
+     * intent is updated once they are known.
+     */
+    private void setShortenedLinks(List<Entry> entries) {
+        List<String> links = new ArrayList<String>();
+        for (Entry entry : entries) {
+            if (entry.getShortenedLink() == null) {
+                links.add(entry.getLink());
+            }
+        }
+        if (links.isEmpty()) {
+            return;
+        }
+        Map<String, String> shortenedLinks = LinkShortener.getInstance().getShortenedLinks(links);
+        for (Entry entry : entries) {
+            String shortenedLink = shortenedLinks.get(entry.getLink());
+            if (shortenedLink != null) {
+                entry.setShortenedLink(shortenedLink);
+            }
+        }
+    }
+
     private void deleteSelectedEntries(SparseArray<Entry> selectedEntries) {
         for (int i = 0; i < selectedEntries.size(); i++){
             int key = selectedEntries.keyAt(i);
@@ -354,7 +473,7 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
             entry.setVisible(false);
             DatabaseHandler.getInstance().updateEntry(entry);
             //  ImageView imageView = (ImageView) myExpandableListItemAdapter.getTitleView(key).findViewById(R.id.image);
-            //  setImageDrawable(imageView, entry);
+            //  setImageResource(imageView, entry);
         }
     }
 
@@ -365,7 +484,7 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
             entry.setFavoriteDate((entry.getFavoriteDate() == null || entry.getFavoriteDate() == 0) ? new Date().getTime() : null);
             DatabaseHandler.getInstance().updateEntry(entry);
             //  ImageView imageView = (ImageView) myExpandableListItemAdapter.getTitleView(key).findViewById(R.id.image);
-            //  setImageDrawable(imageView, entry);
+            //  setImageResource(imageView, entry);
         }
     }
 
@@ -376,7 +495,7 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
             entry.setVisitedDate((entry.getVisitedDate() == null || entry.getVisitedDate() == 0) ? new Date().getTime() : null);
             DatabaseHandler.getInstance().updateEntry(entry);
             //  ImageView imageView = (ImageView) myExpandableListItemAdapter.getTitleView(key).findViewById(R.id.image);
-            //  setImageDrawable(imageView, entry);
+            //  setImageResource(imageView, entry);
         }
     }
 
@@ -384,17 +503,28 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
     public void onLoadComplete(Loader loader, Object data) {
         if (data instanceof  Cursor){
             Cursor cursor = (Cursor) data;
-            swingBottomInAnimationAdapter.reset();
+            if (!entryLoader.isNextPage()) {
+                swingBottomInAnimationAdapter.reset();
+            }
             myExpandableListItemAdapter.changeCursor(cursor);
         }
         setEmptyText(false);
+
+        List<Feed> feeds = feedsToRefresh;
+        if (feeds != null) {
+            feedsToRefresh = null;
+            // a refresh the user asked for reports a category without feeds
+            if (!feeds.isEmpty() || forceRefresh) {
+                refreshFeeds(feeds, showNewsInteraction);
+            }
+        }
     }
 
     @Override
     public void newsTypeModeChanged(int newsTypeMode) {
         this.newsTypeMode = newsTypeMode;
-        if (simpleCursorLoader != null){
-            simpleCursorLoader.startLoading();
+        if (entryLoader != null){
+            entryLoader.startLoading();
         }
     }
 
@@ -404,14 +534,30 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
     }
 
     private class CategoryUpdateHandler extends Handler {
+        private static final int RELOAD_ENTRIES = 100;
+
         @Override
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case CategoryUpdater.RESULT:
+                    // reloads anyway
+                    removeMessages(RELOAD_ENTRIES);
                     updateFinished(true);
                     break;
                 case CategoryUpdater.STATUS_CHANGED:
                     break;
+                case CategoryUpdater.FEED_FINISHED:
+                    // show the entries of finished feeds without waiting for the slowest one, one
+                    // reload covers all feeds which finish within the delay
+                    if (msg.arg1 < msg.arg2 && !hasMessages(RELOAD_ENTRIES)) {
+                        sendEmptyMessageDelayed(RELOAD_ENTRIES, PROGRESSIVE_RELOAD_DELAY);
+                    }
+                    break;
+                case RELOAD_ENTRIES:
+                    if (entryLoader != null) {
+                        entryLoader.startLoading();
+                    }
+                    break;
                 case CategoryUpdater.ERROR:
                     updateFinished(false);
                     Toast.makeText(getActivity(), (String) msg.obj, Toast.LENGTH_SHORT).show();
@@ -427,10 +573,34 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
         return PersistableEntries.loadFromCursor(cursor);
     }
 
+    /**
+     * @return the entry at the position, read completely
+     */
+    private Entry getEntry(int position) {
+        return GetEntryByCursor((Cursor) myExpandableListItemAdapter.getItem(position));
+    }
+
     private class MyExpandableGridItemAdapter extends ExpandableGridItemCursorAdapter {
 
         private Context mContext;
         private SparseBooleanArrayParcelable mSelectedItemIds;
+        private final LayoutInflater mInflater;
+        private final int mCardPadding;
+        /**
+         * Shared by all rows, the binding happens on the UI thread only
+         */
+        private final PrettyTime mPrettyTime = new PrettyTime();
+        private final Date mNow = new Date();
+        private final Date mEntryDate = new Date();
+        private final StringBuilder mInfo = new StringBuilder();
+        /**
+         * Moved over the rows while binding, so only the shown columns are read
+         */
+        private final EntryRow mRow = new EntryRow();
+        /**
+         * Same width as the prefetched images, so they are found in the memory cache
+         */
+        private final int mCardImageWidth;
 
         /**
          * Creates a new ExpandableListItemAdapter with the specified list, or an empty list if
@@ -440,75 +610,93 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
             super(context, R.layout.expandable_card, R.id.card_title, R.id.expandable_card_content, cursor);
             mContext = context;
             mSelectedItemIds = new SparseBooleanArrayParcelable();
+            mInflater = LayoutInflater.from(context);
+            mCardPadding = context.getResources().getDimensionPixelSize(R.dimen.card_layout_padding);
+            mCardImageWidth = UIUtils.getCardImageWidth(context);
         }
 
         @Override
         public View getView(final int position, View convertView, ViewGroup parent) {
             View view = super.getView(position, convertView, parent);
-            view.setOnLongClickListener(new View.OnLongClickListener() {
-                @Override
-                public boolean onLongClick(View v) {
-                    onListItemCheck(position);
-                    return false;
-                }
-            });
+            CardLongClickListener longClickListener = (CardLongClickListener) view.getTag(R.id.card_long_click_listener);
+            if (longClickListener == null) {
+                longClickListener = new CardLongClickListener();
+                view.setTag(R.id.card_long_click_listener, longClickListener);
+                view.setOnLongClickListener(longClickListener);
+            }
+            longClickListener.position = position;
             view.setBackgroundResource(mSelectedItemIds.get(position) ? R.drawable.card_background_blue : R.drawable.card_background_white);
-            int pad = getResources().getDimensionPixelSize(R.dimen.card_layout_padding);
-            view.setPadding(pad, pad, pad, pad);
+            view.setPadding(mCardPadding, mCardPadding, mCardPadding, mCardPadding);
             return view;
         }
 
         @Override
         public View getTitleView(final int position, View convertView, ViewGroup parent) {
-            Entry entry = GetEntryByCursor((Cursor) getItem(position));
-
-            LayoutInflater inflater = (LayoutInflater) mContext.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-            LinearLayout layout = (LinearLayout) inflater.inflate(R.layout.news_card, null);
-
-            TextView titleTextView = (TextView) layout.findViewById(R.id.title);
-            TextView infoTextView = (TextView) layout.findViewById(R.id.info);
-            ImageView entryType = (ImageView) layout.findViewById(R.id.image);
-
-            UIUtils.setTextMaybeHtml(titleTextView, entry.getTitle());
-
-            setImageDrawable(entryType, entry);
-
-            long current = new Date().getTime();
-            if (current > entry.getDate()) {
-                current = entry.getDate();
+            EntryRow row = mRow.moveTo((Cursor) getItem(position));
+
+            View layout = convertView;
+            TitleHolder holder;
+            if (layout == null) {
+                layout = mInflater.inflate(R.layout.news_card, parent, false);
+                holder = new TitleHolder();
+                holder.title = (TextView) layout.findViewById(R.id.title);
+                holder.info = (TextView) layout.findViewById(R.id.info);
+                holder.entryType = (ImageView) layout.findViewById(R.id.image);
+                holder.info.setTextColor(category.getSecondaryColor());
+                holder.info.setTextSize(TypedValue.COMPLEX_UNIT_SP, 12);
+                layout.setTag(holder);
+            } else {
+                holder = (TitleHolder) layout.getTag();
             }
-            String prettyTimeString = new PrettyTime().format(new Date(current));
 
-            infoTextView.setText(String.format("%s - %s", entry.getSrcName(), prettyTimeString));
-            infoTextView.setTextColor(category.getSecondaryColor());
-            infoTextView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 12);
+            UIUtils.setRenderedText(holder.title, RenderedTextCache.getInstance().get(row.getId(), row.getTitle()));
+            setImageResource(holder.entryType, row);
+
+            mInfo.setLength(0);
+            mInfo.append(row.getSrcName());
+            if (row.hasDate()) {
+                long now = System.currentTimeMillis();
+                mNow.setTime(now);
+                mEntryDate.setTime(Math.min(now, row.getDate()));
+                mPrettyTime.setReference(mNow);
+                mInfo.append(" - ").append(mPrettyTime.format(mEntryDate));
+            }
+            holder.info.setText(mInfo);
 
             return layout;
         }
 
         @Override
         public View getContentView(final int position, View convertView, ViewGroup parent) {
-            final Entry entry = GetEntryByCursor((Cursor) getItem(position));
-
-            LayoutInflater inflater = (LayoutInflater) mContext.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-            LinearLayout layout = (LinearLayout) inflater.inflate(R.layout.news_card_expand, null);
-
-            View colorBorder = layout.findViewById(R.id.colorBorder);
-            colorBorder.setBackgroundColor(category.getSecondaryColor());
-
-            final TextView description = (TextView) layout.findViewById(R.id.expand_card_main_inner_simple_title);
-            UIUtils.setTextMaybeHtml(description, entry.getDescription());
-
-            layout.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    entry.setVisitedDate(new Date().getTime());
-                    DatabaseHandler.getInstance().updateEntry(entry);
-                    myExpandableListItemAdapter.notifyDataSetChanged();
-                    Intent browserIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(entry.getLink())); //TODO link or shortenedlink
-                    startActivity(browserIntent);
+            EntryRow row = mRow.moveTo((Cursor) getItem(position));
+
+            boolean showImages = PrefUtilities.getInstance().shouldShowImages();
+            View layout = convertView;
+            ContentHolder holder = layout != null ? (ContentHolder) layout.getTag() : null;
+            if (holder == null || (holder.image != null) != showImages) {
+                // the preference changed since the card was inflated
+                holder = new ContentHolder();
+                if (showImages) {
+                    layout = mInflater.inflate(R.layout.news_card_expand_image, parent, false);
+                    holder.image = (NetworkTextView) layout.findViewById(R.id.expand_card_main_inner_simple_title);
+                    holder.image.setImageWidth(mCardImageWidth);
+                    holder.image.setLoadingPolicy(imageLoadingPolicy);
+                    holder.description = holder.image;
+                } else {
+                    layout = mInflater.inflate(R.layout.news_card_expand, parent, false);
+                    holder.description = (TextView) layout.findViewById(R.id.expand_card_main_inner_simple_title);
                 }
-            });
+                layout.findViewById(R.id.colorBorder).setBackgroundColor(category.getSecondaryColor());
+                layout.setOnClickListener(holder);
+                layout.setTag(holder);
+            }
+
+            holder.position = position;
+            // plain text since the sanitizing at ingest
+            holder.description.setText(row.getDescription());
+            if (holder.image != null) {
+                holder.image.setImageUrl(row.getImageLink(), VolleySingleton.getImagePipeline());
+            }
             return layout;
         }
 
@@ -571,14 +759,53 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
         }
     }
 
-    private void setImageDrawable(ImageView entryType, Entry entry) {
-        Drawable drawable = null;
-        if (entry.getFavoriteDate() != null && entry.getFavoriteDate() > 0) {
-            drawable = getResources().getDrawable(R.drawable.ic_nav_favorite);
-        } else if (entry.getVisitedDate() != null && entry.getVisitedDate() > 0) {
-            drawable = getResources().getDrawable(R.drawable.ic_nav_recently_used);
+    private static class TitleHolder {
+        TextView title;
+        TextView info;
+        ImageView entryType;
+    }
+
+    private class ContentHolder implements View.OnClickListener {
+        TextView description;
+        /**
+         * The description showing the entry image above, {@code null} without images
+         */
+        NetworkTextView image;
+        int position;
+
+        @Override
+        public void onClick(View v) {
+            Entry entry = getEntry(position);
+            entry.setVisitedDate(new Date().getTime());
+            DatabaseHandler.getInstance().updateEntry(entry);
+            myExpandableListItemAdapter.notifyDataSetChanged();
+            Intent browserIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(entry.getLink())); //TODO link or shortenedlink
+            startActivity(browserIntent);
         }
-        entryType.setImageDrawable(drawable);
+    }
+
+    /**
+     * Kept on the card, so a recycled card only gets its new position
+     */
+    private class CardLongClickListener implements View.OnLongClickListener {
+        int position;
+
+        @Override
+        public boolean onLongClick(View v) {
+            onListItemCheck(position);
+            return false;
+        }
+    }
+
+    private void setImageResource(ImageView entryType, EntryRow row) {
+        // unlike a drawable, an unchanged resource is not loaded again by a recycled view
+        int resId = 0;
+        if (row.getFavoriteDate() > 0) {
+            resId = R.drawable.ic_nav_favorite;
+        } else if (row.getVisitedDate() > 0) {
+            resId = R.drawable.ic_nav_recently_used;
+        }
+        entryType.setImageResource(resId);
     }
 
     @Override
@@ -598,6 +825,14 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
         }
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (updater != null) {
+            updater.cancel();
+        }
+    }
+
     private class ActionModeCallBack implements ActionMode.Callback {
 
         @Override
@@ -610,6 +845,7 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
             shareActionProvider.setShareHistoryFileName(
                     ShareActionProvider.DEFAULT_SHARE_HISTORY_FILE_NAME);
             shareActionProvider.setShareIntent(createShareIntent());
+            LinkShortener.getInstance().addListener(shortenerListener);
             shareActionProvider.setOnShareTargetSelectedListener(new ShareActionProvider.OnShareTargetSelectedListener() {
                 @Override
                 public boolean onShareTargetSelected(ShareActionProvider shareActionProvider, Intent intent) {
@@ -660,7 +896,7 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
             if (shouldFinish) {
                 mode.finish();
                 myExpandableListItemAdapter.removeSelection();
-                simpleCursorLoader.forceLoad();
+                entryLoader.startLoading();
                 return true;
             }
             return false;
@@ -668,6 +904,7 @@ public class ExpandableNewsFragment extends Fragment implements SwipeRefreshLayo
 
         @Override
         public void onDestroyActionMode(ActionMode mode) {
+            LinkShortener.getInstance().removeListener(shortenerListener);
             mActionMode = null;
             myExpandableListItemAdapter.deselectAllIds();
         }
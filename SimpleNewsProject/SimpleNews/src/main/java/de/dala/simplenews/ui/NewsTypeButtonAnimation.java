@@ -23,6 +23,7 @@ import de.dala.simplenews.utilities.UIUtils;
 public class NewsTypeButtonAnimation  {
     private FloatingActionMenu mViewToAnimate;
     private ScrollClass myScrollClass;
+    private AbsListView.OnScrollListener mScrollListener;
 
     public void fadeIn(){
         if (myScrollClass != null) {
@@ -31,7 +32,15 @@ public class NewsTypeButtonAnimation  {
     }
 
     public void init(final AbsListView view, FloatingActionMenu viewToAnimate) {
+        init(view, viewToAnimate, null);
+    }
+
+    /**
+     * @param scrollListener also informed about scrolling, as the view takes only one listener
+     */
+    public void init(final AbsListView view, FloatingActionMenu viewToAnimate, AbsListView.OnScrollListener scrollListener) {
         mViewToAnimate = viewToAnimate;
+        mScrollListener = scrollListener;
         initScrollClass(view);
         initClick();
     }
@@ -56,10 +65,18 @@ public class NewsTypeButtonAnimation  {
             boolean sliding = false;
             int mTotalItemCount = 0;
 
-            @Override public void onScrollStateChanged(AbsListView view, int scrollState) {}
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+                if (mScrollListener != null) {
+                    mScrollListener.onScrollStateChanged(view, scrollState);
+                }
+            }
 
             @Override
             public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (mScrollListener != null) {
+                    mScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+                }
                 mTotalItemCount = totalItemCount;
                 if (totalItemCount == 0){
                     fadeIn();
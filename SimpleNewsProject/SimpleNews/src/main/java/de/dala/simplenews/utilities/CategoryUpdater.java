@@ -1,39 +1,31 @@
 package de.dala.simplenews.utilities;
 
 import android.content.Context;
-import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Message;
 import android.util.Log;
 
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
-import com.rosaloves.bitlyj.BitlyMethod;
-import com.rosaloves.bitlyj.data.Pair;
-
-import java.io.ByteArrayInputStream;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidrss.MediaEnclosure;
-import androidrss.RSSConfig;
-import androidrss.RSSFault;
+import androidrss.MediaThumbnail;
 import androidrss.RSSFeed;
 import androidrss.RSSItem;
-import androidrss.RSSParser;
+import androidrss.RSSWatermark;
 import de.dala.simplenews.R;
 import de.dala.simplenews.common.Category;
 import de.dala.simplenews.common.Entry;
 import de.dala.simplenews.common.Feed;
 import de.dala.simplenews.database.DatabaseHandler;
 import de.dala.simplenews.database.IDatabaseHandler;
-import de.dala.simplenews.network.NetworkCommunication;
-import de.dala.simplenews.parser.XmlParser;
-
-import static com.rosaloves.bitlyj.Bitly.shorten;
+import de.dala.simplenews.network.RequestClass;
 
 /**
  * Created by Daniel on 27.12.13.
@@ -44,20 +36,62 @@ public class CategoryUpdater {
     public static final int CANCEL = -2;
     public static final int STATUS_CHANGED = 3;
     public static final int RESULT = 4;
+    /**
+     * Sent once per feed after it has been parsed and persisted. {@code obj} is the {@link Feed},
+     * {@code arg1} the number of finished feeds and {@code arg2} the total number of feeds.
+     */
+    public static final int FEED_FINISHED = 5;
     public static final String IMAGE_JPEG = "image/jpeg";
     public static final String IMAGE_PNG = "image/png";
+    private static final String IMAGE_TYPE = "image/";
     private static final String TAG = "CategoryUpdater";
+    /**
+     * Time after which a refresh stops waiting for the remaining feeds and finishes with the
+     * feeds stored until then.
+     */
+    public static final long DEFAULT_DEADLINE = 1000 * 60; // one minute
+    /**
+     * Longer descriptions are cut, the card shows a summary and links to the article
+     */
+    private static final int MAX_DESCRIPTION_LENGTH = 1000;
+    /**
+     * A feed is stored completely at least this often, so edited and removed items are taken
+     * over even though later refreshes only add the new items
+     */
+    private static final long FULL_REFRESH_INTERVAL = 1000 * 60 * 60 * 24; // one day
+    private static final int PARSE_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Bounded pool shared by all updaters, so parsing never runs on more than
+     * {@link #PARSE_THREADS} threads regardless of how many categories are refreshed.
+     */
+    private static final ExecutorService PARSE_EXECUTOR = Executors.newFixedThreadPool(PARSE_THREADS);
+    /**
+     * Shared by all updaters, so a feed of several categories is downloaded and parsed once.
+     */
+    private static final FeedCoalescer COALESCER = new FeedCoalescer(PARSE_EXECUTOR);
+
     private Handler handler;
     private Category category;
-    private List<FetchingResult> results;
-    private int currentWorkingThreads = 0;
     private IDatabaseHandler databaseHandler;
     private boolean updateDatabase;
-    private boolean isRunning = false;
+    /**
+     * Feeds of a category on screen go before the ones refreshed in the background
+     */
+    private RequestClass feedRequestClass;
+    private volatile Refresh refresh;
     private Context context;
-
-    public CategoryUpdater(Handler handler, Category category, boolean updateDatabase, Context context) {
+    /**
+     * Width the images of the entries should fill, taken when a refresh starts
+     */
+    private volatile int cardImageWidth;
+
+    /**
+     * @param visible whether the user looks at the category, its feeds are requested first then
+     */
+    public CategoryUpdater(Handler handler, Category category, boolean updateDatabase, boolean visible, Context context) {
         this.handler = handler;
+        this.feedRequestClass = visible ? RequestClass.VISIBLE_FEED : RequestClass.FEED;
         this.category = category;
         this.context = context;
         databaseHandler = DatabaseHandler.getInstance();
@@ -65,212 +99,299 @@ public class CategoryUpdater {
     }
 
     public boolean start() {
-        if (isRunning) {
+        return start(category.getFeeds());
+    }
+
+    /**
+     * Refreshes only the given feeds of the category.
+     */
+    public boolean start(List<Feed> feeds) {
+        return start(feeds, DEFAULT_DEADLINE);
+    }
+
+    /**
+     * Refreshes only the given feeds of the category. Feeds which have not been stored
+     * when the deadline has passed are dropped, the refresh finishes with the others.
+     *
+     * @param deadline maximal duration of the refresh in milliseconds
+     */
+    public boolean start(List<Feed> feeds, long deadline) {
+        if (isRunning()) {
             return false;
         }
 
-        isRunning = true;
         String msg = context != null ? context.getString(R.string.update_news) : "";
         sendMessage(msg, STATUS_CHANGED);
-        results = new ArrayList<FetchingResult>();
-        currentWorkingThreads = category.getFeeds().size();
-        if (currentWorkingThreads == 0) {
+        if (feeds.size() == 0) {
             sendMessage("No Feeds found", ERROR);
+            return false;
         }
-        for (final Feed feed : category.getFeeds()) {
-            NetworkCommunication.loadRSSFeed(feed.getXmlUrl(), new Response.Listener<String>() {
-                        @Override
-                        public void onResponse(String feedStringResult) {
-                            resultFetched(new FetchingResult(feed, feedStringResult));
-                        }
-                    }, new Response.ErrorListener() {
-                        @Override
-                        public void onErrorResponse(VolleyError error) {
-                            resultFetched(null);
-                        }
+
+        cardImageWidth = context != null ? UIUtils.getCardImageWidth(context) : 0;
+        final Refresh current = new Refresh(feeds.size());
+        refresh = current;
+        handler.postDelayed(current.deadline, deadline);
+        for (final Feed feed : feeds) {
+            FeedCoalescer.Call call = COALESCER.load(feed.getXmlUrl(), feed.getEtag(), feed.getLastModified(), getWatermark(feed), feedRequestClass, new FeedCoalescer.Callback() {
+                @Override
+                public void onParsed(RSSFeed rssFeed, String etag, String lastModified, boolean complete) {
+                    if (!current.stopped) {
+                        PARSE_EXECUTOR.execute(new FeedTask(current, feed, rssFeed, etag, lastModified, complete));
                     }
-            );
+                }
+
+                @Override
+                public void onNotModified() {
+                    if (!current.stopped) {
+                        // nothing changed since the last refresh, keep the stored entries
+                        current.unchangedFeeds.incrementAndGet();
+                        rescheduleFeed(current, feed, false);
+                    }
+                }
+
+                @Override
+                public void onFailed() {
+                    if (!current.stopped) {
+                        rescheduleFeed(current, feed, true);
+                    }
+                }
+            });
+            current.calls.add(call);
         }
         return true;
     }
 
-    private void dropCategory() {
-        databaseHandler.removeEntries(category.getId(), null, null);
+    /**
+     * Abandons the running refresh: its requests are cancelled unless another category waits for
+     * the same feed, parsing stops at the next chunk of the feed and no result is sent anymore.
+     * Feeds stored until now are kept.
+     */
+    public void cancel() {
+        Refresh current = refresh;
+        if (current != null) {
+            handler.removeCallbacks(current.deadline);
+            current.completed.set(true);
+            current.stop();
+        }
     }
 
+    /**
+     * Plans the next refresh of a feed that brought no new content.
+     */
+    private void rescheduleFeed(final Refresh current, final Feed feed, final boolean failed) {
+        PARSE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (current.stopped) {
+                        return;
+                    }
+                    if (failed) {
+                        FeedScheduler.failed(feed);
+                    } else {
+                        FeedScheduler.notModified(feed);
+                    }
+                    if (updateDatabase) {
+                        databaseHandler.updateFeed(feed);
+                    }
+                } finally {
+                    feedFinished(current, feed);
+                }
+            }
+        });
+    }
 
-    private void resultFetched(FetchingResult result) {
-        currentWorkingThreads--;
-        if (result != null) {
-            results.add(result);
+    private void feedFinished(Refresh current, Feed feed) {
+        if (current.stopped) {
+            // the refresh has already been finished or abandoned
+            return;
         }
+        Message msg = handler.obtainMessage(FEED_FINISHED, current.finishedFeeds.incrementAndGet(), current.totalFeeds, feed);
+        handler.sendMessage(msg);
 
-        if (currentWorkingThreads <= 0) {
-            // every thread has catched the information
-            new AsyncTask<Void, Void, Void>() {
+        if (current.pendingFeeds.decrementAndGet() == 0) {
+            // every feed has been fetched and parsed
+            handler.removeCallbacks(current.deadline);
+            finish(current);
+        }
+    }
 
-                @Override
-                protected Void doInBackground(Void... params) {
-                    if (updateDatabase) {
-                        dropCategory();
-                    }
-                    parseInformation();
-                    return null;
-                }
-            }.execute();
+    /**
+     * Sends the result of the refresh, only once.
+     */
+    private void finish(final Refresh current) {
+        if (!current.completed.compareAndSet(false, true)) {
+            return;
         }
+        PARSE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                getNewItems(current);
+            }
+        });
     }
 
-    private void parseInformation() {
-        RSSParser parser = new RSSParser(new RSSConfig());
-        List<Entry> entries = new ArrayList<Entry>();
-        for (FetchingResult fetchingResult : results) {
-            try {
-                RSSFeed rssFeed = parser.parse(new ByteArrayInputStream(fetchingResult.stringResult.getBytes("UTF-8")));
-                if (fetchingResult.feed.getTitle() == null) {
-                    fetchingResult.feed.setTitle(rssFeed.getTitle());
-                    databaseHandler.updateFeed(fetchingResult.feed);
-                }
-                String title = rssFeed.getTitle();
-                for (RSSItem item : rssFeed.getItems()) {
-                    Entry entry = getEntryFromRSSItem(item, fetchingResult.feed.getId(), title);
-                    if (entry != null) {
-                        entries.add(entry);
-                    }
-                }
-            } catch (UnsupportedEncodingException ex) {
-                Log.e(TAG, "UnsupportedEncoding", ex);
-            } catch (RSSFault e) {
-                Log.e(TAG, "RSSFault", e);
+    /**
+     * @return the entries of the category built from the parsed feed
+     */
+    private List<Entry> getEntries(Feed feed, RSSFeed rssFeed) {
+        List<Entry> feedEntries = new ArrayList<Entry>();
+        if (feed.getTitle() == null) {
+            feed.setTitle(rssFeed.getTitle());
+            databaseHandler.updateFeed(feed);
+        }
+        String title = rssFeed.getTitle();
+        for (RSSItem item : rssFeed.getItems()) {
+            Entry entry = getEntryFromRSSItem(item, feed.getId(), title);
+            if (entry != null) {
+                feedEntries.add(entry);
             }
         }
+        return feedEntries;
+    }
 
+    /**
+     * @return the publication dates the update rate of the feed is estimated from. An incremental
+     * parse only has the items since the last refresh, so the stored entries are used, which
+     * include the new ones by now.
+     */
+    private List<Long> getLatestDates(Feed feed, List<Entry> feedEntries) {
         if (updateDatabase) {
-            addToDatabase(entries);
+            return databaseHandler.getLatestEntryDates(feed.getId(), FeedScheduler.RATE_SAMPLE_SIZE);
+        }
+        List<Long> dates = new ArrayList<Long>(feedEntries.size());
+        for (Entry entry : feedEntries) {
+            dates.add(entry.getDate());
+        }
+        return dates;
+    }
+
+    /**
+     * @return the newest stored item of the feed or {@code null} if the whole feed has to be stored
+     */
+    private static RSSWatermark getWatermark(Feed feed) {
+        if (feed.getWatermarkLink() == null && feed.getWatermarkDate() == null) {
+            return null;
         }
+        if (feed.getFullRefresh() == null || new Date().getTime() - feed.getFullRefresh() >= FULL_REFRESH_INTERVAL) {
+            return null;
+        }
+        return new RSSWatermark(feed.getWatermarkLink(), feed.getWatermarkDate() != null ? new Date(feed.getWatermarkDate()) : null);
+    }
 
-        getNewItems(entries);
+    /**
+     * Remembers the newest item, as long as the feed lists its items newest first. A single item
+     * of a complete feed does not tell the order.
+     */
+    private static void setWatermark(Feed feed, List<RSSItem> items, boolean complete) {
+        RSSWatermark watermark = complete && items.size() < 2 ? null : RSSWatermark.newest(items);
+        feed.setWatermarkLink(watermark != null ? watermark.getLink() : null);
+        feed.setWatermarkDate(watermark != null ? watermark.getPubDate().getTime() : null);
     }
 
-    private void addToDatabase(List<Entry> entries) {
+    /**
+     * Stores the entries of the feed in a single transaction. The entries of a complete feed
+     * replace the stored ones, the new entries of an incremental parse are added to them.
+     */
+    private void addToDatabase(Feed feed, List<Entry> entries, boolean complete) {
         Long deprecatedTime = PrefUtilities.getInstance().getDeprecatedTime();
+        List<Entry> currentEntries = new ArrayList<Entry>(entries.size());
         for (Entry entry : entries) {
             if (deprecatedTime == null || (entry.getFavoriteDate() != null && entry.getFavoriteDate() > 0) || (entry.getDate() != null && entry.getDate() > deprecatedTime)){
-                databaseHandler.addEntry(category.getId(), entry.getFeedId(), entry);
+                currentEntries.add(entry);
             }
         }
+        if (complete) {
+            databaseHandler.replaceFeedEntries(category.getId(), feed.getId(), currentEntries);
+        } else {
+            databaseHandler.addEntries(category.getId(), feed.getId(), currentEntries);
+        }
     }
 
-    private void getNewItems(List<Entry> entries) {
-        if (entries != null && !entries.isEmpty()) {
+    private void getNewItems(Refresh current) {
+        List<Entry> entries = current.entries;
+        boolean hasNewEntries = !entries.isEmpty();
+        if (hasNewEntries || current.unchangedFeeds.get() > 0) {
             category.setLastUpdateTime(new Date().getTime());
             databaseHandler.updateCategory(category);
-
+        }
+        if (hasNewEntries) {
             deleteDeprecatedEntries();
+            if (context != null) {
+                List<Entry> newEntries;
+                synchronized (entries) {
+                    newEntries = new ArrayList<Entry>(entries);
+                }
+                ImagePrefetcher.getInstance().prefetch(context, newEntries);
+            }
 
             sendMessage(null, RESULT);
-            if (PrefUtilities.getInstance().shouldShortenLinks()) {
-                getShortenedLinks(entries);
-            }
         } else {
             sendMessage(null, CANCEL);
         }
-        isRunning = false;
     }
 
     private void deleteDeprecatedEntries() {
         databaseHandler.deleteDeprecatedEntries(PrefUtilities.getInstance().getDeprecatedTime());
     }
 
-    private void getShortenedLinks(final List<Entry> entries) {
-        for (final Entry entry : entries) {
-            if (entry.getShortenedLink() != null) {
-                continue;
+    /**
+     * Picks the smallest thumbnail which is at least as wide as the card. The enclosure, often
+     * the original image, is only taken when no thumbnail is wide enough; without it the widest
+     * thumbnail is used.
+     *
+     * @param width width of the card in pixels, {@code 0} if unknown
+     * @return the url of the image or {@code null} if the item has none
+     */
+    static String selectImageUrl(RSSItem item, int width) {
+        MediaThumbnail adequate = null;
+        MediaThumbnail widest = null;
+        MediaThumbnail unsized = null;
+        for (MediaThumbnail thumbnail : item.getThumbnails()) {
+            int thumbnailWidth = thumbnail.getWidth();
+            if (thumbnailWidth <= 0) {
+                if (unsized == null) {
+                    unsized = thumbnail;
+                }
+            } else if (width > 0 && thumbnailWidth >= width) {
+                if (adequate == null || thumbnailWidth < adequate.getWidth()) {
+                    adequate = thumbnail;
+                }
+            } else if (widest == null || thumbnailWidth > widest.getWidth()) {
+                widest = thumbnail;
             }
-            //shortenWithAdfly(entry);
-            shortenWithBitly(entry);
         }
-    }
-
-    private void shortenWithBitly(final Entry entry) {
-        if (entry != null) {
-            String urlForCall = getUrlForCall(shorten(entry.getLink()));
-            NetworkCommunication.loadShortenedUrl(urlForCall, new Response.Listener<String>() {
-                        @Override
-                        public void onResponse(String s) {
-                            String shortenedUrl = XmlParser.getInstance().readShortenedLink(s);
-                            if (shortenedUrl != null) {
-                                entry.setShortenedLink(shortenedUrl);
-                                databaseHandler.updateEntry(entry);
-                            }
-                        }
-                    }, new Response.ErrorListener() {
-                        @Override
-                        public void onErrorResponse(VolleyError volleyError) {
-
-                        }
-                    }
-            );
+        if (adequate != null) {
+            return adequate.getUrl().toString();
         }
+        MediaEnclosure enclosure = item.getEnclosure();
+        if (enclosure != null && isImage(enclosure.getMimeType())) {
+            return enclosure.getUrl().toString();
+        }
+        if (widest != null) {
+            return widest.getUrl().toString();
+        }
+        return unsized != null ? unsized.getUrl().toString() : null;
     }
 
-    private void shortenWithAdfly(final Entry entry) {
-        String urlForCall = String.format("http://api.adf.ly/api.php?key=86a235af637887da35e4627465b784cb&uid=6090236&advert_type=int&domain=adf.ly&url=%s", entry.getLink());
-
-        NetworkCommunication.loadShortenedUrl(urlForCall, new Response.Listener<String>() {
-                    @Override
-                    public void onResponse(String shortenedLink) {
-                        if (!"error".equalsIgnoreCase(shortenedLink)) {
-                            entry.setShortenedLink(shortenedLink);
-                            databaseHandler.updateEntry(entry);
-                        }
-                    }
-                }, new Response.ErrorListener() {
-                    @Override
-                    public void onErrorResponse(VolleyError volleyError) {
-                        Log.e("CategoryUpdater", String.format("Entry with id: %s could not be shortened", entry.getId() + ""));
-                    }
-                }
-        );
-    }
-
-    protected String getUrlForCall(BitlyMethod<?> m) {
-        StringBuilder sb = new StringBuilder("http://api.bit.ly/v3/").append(m.getName()).append("?")
-                .append("&login=").append(Constants.USER)
-                .append("&apiKey=").append(Constants.API_KEY)
-                .append("&format=xml");
-
-        try {
-            for (Pair<String, String> p : m.getParameters()) {
-                sb.append("&").append(p.getOne()).append("=").append(URLEncoder.encode(p.getTwo(), "UTF-8"));
-            }
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
-        }
-        return sb.toString();
+    private static boolean isImage(String mimeType) {
+        // not only jpeg and png, gif and webp are decoded as well
+        return mimeType != null && mimeType.regionMatches(true, 0, IMAGE_TYPE, 0, IMAGE_TYPE.length());
     }
 
     private Entry getEntryFromRSSItem(RSSItem item, Long feedId, String source) {
         if (item != null) {
-            MediaEnclosure enclose = item.getEnclosure();
-            String mediaUri = null;
-            if (enclose != null) {
-                if (enclose.getMimeType().equals(IMAGE_JPEG) || enclose.getMimeType().equals(IMAGE_PNG)) {
-                    mediaUri = enclose.getUrl().toString();
-                }
-            }
+            String mediaUri = selectImageUrl(item, cardImageWidth);
             String url = item.getLink().toString();
             Date pubDate = item.getPubDate();
             Long time = null;
             if (pubDate != null) {
                 time = pubDate.getTime();
             }
-            String desc = item.getDescription();
-            if (desc != null) {
-                desc = desc.replaceAll("<.*?>", "").replace("()", "").replace("&nbsp;", "");
-            }
+            // stored as plain text, so the list only has to show it
+            String desc = HtmlText.toPlainText(item.getDescription(), MAX_DESCRIPTION_LENGTH);
 
-            return new Entry(null, feedId, category.getId(), item.getTitle() != null ? item.getTitle().trim() : item.getTitle(), desc != null ? desc.trim() : desc, time, source, url, mediaUri, null, null, false);
+            return new Entry(null, feedId, category.getId(), item.getTitle() != null ? item.getTitle().trim() : item.getTitle(), desc, time, source, url, mediaUri, null, null, false);
         }
         return null;
     }
@@ -283,16 +404,102 @@ public class CategoryUpdater {
     }
 
     public boolean isRunning() {
-        return isRunning;
+        Refresh current = refresh;
+        return current != null && !current.completed.get();
     }
 
-    private class FetchingResult {
-        public Feed feed;
-        public String stringResult;
+    /**
+     * State of one run of the updater, so callbacks of an abandoned run never mix with the ones
+     * of the next run.
+     */
+    private class Refresh {
+        private final int totalFeeds;
+        private final List<Entry> entries = Collections.synchronizedList(new ArrayList<Entry>());
+        private final AtomicInteger pendingFeeds;
+        private final AtomicInteger finishedFeeds = new AtomicInteger();
+        private final AtomicInteger unchangedFeeds = new AtomicInteger();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final List<FeedCoalescer.Call> calls = Collections.synchronizedList(new ArrayList<FeedCoalescer.Call>());
+        private volatile boolean stopped = false;
+
+        private final Runnable deadline = new Runnable() {
+            @Override
+            public void run() {
+                Log.w(TAG, String.format("Refresh of category %s stopped after the deadline", category.getId()));
+                stop();
+                finish(Refresh.this);
+            }
+        };
+
+        private Refresh(int totalFeeds) {
+            this.totalFeeds = totalFeeds;
+            pendingFeeds = new AtomicInteger(totalFeeds);
+        }
 
-        public FetchingResult(Feed feed, String result) {
+        private void stop() {
+            stopped = true;
+            synchronized (calls) {
+                for (FeedCoalescer.Call call : calls) {
+                    call.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Persists a single feed as soon as it has been parsed.
+     */
+    private class FeedTask implements Runnable {
+        private Refresh refresh;
+        private Feed feed;
+        private RSSFeed rssFeed;
+        private String etag;
+        private String lastModified;
+        private boolean complete;
+
+        public FeedTask(Refresh refresh, Feed feed, RSSFeed rssFeed, String etag, String lastModified, boolean complete) {
+            this.refresh = refresh;
             this.feed = feed;
-            this.stringResult = result;
+            this.rssFeed = rssFeed;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.complete = complete;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (refresh.stopped) {
+                    return;
+                }
+                List<Entry> feedEntries = getEntries(feed, rssFeed);
+                boolean unchanged = !complete && feedEntries.isEmpty();
+                if (unchanged) {
+                    // the feed starts with the newest stored item
+                    refresh.unchangedFeeds.incrementAndGet();
+                    FeedScheduler.notModified(feed);
+                }
+                if (updateDatabase && !unchanged) {
+                    addToDatabase(feed, feedEntries, complete);
+                    setWatermark(feed, rssFeed.getItems(), complete);
+                    if (complete) {
+                        feed.setFullRefresh(new Date().getTime());
+                    }
+                }
+                if (!unchanged) {
+                    FeedScheduler.updated(feed, rssFeed.getTTL(), getLatestDates(feed, feedEntries));
+                }
+                if (updateDatabase) {
+                    // only remember the validators once the body has been stored
+                    feed.setEtag(etag);
+                    feed.setLastModified(lastModified);
+                    databaseHandler.updateFeed(feed);
+                }
+                refresh.entries.addAll(feedEntries);
+            } finally {
+                rssFeed = null;
+                feedFinished(refresh, feed);
+            }
         }
     }
 }
@@ -0,0 +1,357 @@
+package de.dala.simplenews.utilities;
+
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import androidrss.RSSConfig;
+import androidrss.RSSFault;
+import androidrss.RSSFeed;
+import androidrss.RSSParserSPI;
+import androidrss.RSSWatermark;
+import de.dala.simplenews.network.FeedRequest;
+import de.dala.simplenews.network.NetworkCommunication;
+import de.dala.simplenews.network.RequestClass;
+
+/**
+ * Downloads and parses feeds on behalf of several updaters. A feed which is part of several
+ * categories is requested once while its request is running and parsed completely once, every
+ * caller gets the result for its own validators and watermark. Parsed feeds are kept for
+ * {@link #FRESHNESS} and handed out again without a request.
+ */
+public class FeedCoalescer {
+    private static final String TAG = "FeedCoalescer";
+    public static final long FRESHNESS = 1000 * 60; // one minute
+    private static final int MAX_PARSED_FEEDS = 20;
+
+    public interface Callback {
+        /**
+         * @param etag         validator of the parsed content, may be {@code null}
+         * @param lastModified validator of the parsed content, may be {@code null}
+         * @param complete     whether the feed contains all items or the new ones only
+         */
+        void onParsed(RSSFeed feed, String etag, String lastModified, boolean complete);
+
+        /**
+         * The content did not change since the validators of the caller.
+         */
+        void onNotModified();
+
+        void onFailed();
+    }
+
+    private final Executor parseExecutor;
+    private final RSSParserSPI parser = new RSSConfig(RSSConfig.Parser.PULL).newParser();
+    /**
+     * Running requests by normalized url
+     */
+    private final Map<String, InFlight> inFlights = new HashMap<String, InFlight>();
+    /**
+     * Recently parsed feeds by normalized url
+     */
+    private final LruCache<String, Parsed> parsedFeeds = new LruCache<String, Parsed>(MAX_PARSED_FEEDS);
+
+    /**
+     * @param parseExecutor runs the parsing, callbacks of parsed feeds are called on it
+     */
+    public FeedCoalescer(Executor parseExecutor) {
+        this.parseExecutor = parseExecutor;
+    }
+
+    /**
+     * Loads a feed, joining a running request for the same feed. The request is conditional as
+     * long as every caller waiting for it has the same validators, a caller with other validators
+     * starts an unconditional request which serves all following callers.
+     *
+     * @param watermark    newest item the caller knows, may be {@code null}
+     * @param requestClass class of a new request, a caller joining a running request keeps its class
+     * @return the call, to be cancelled when the caller is no longer interested
+     */
+    public Call load(String url, String etag, String lastModified, RSSWatermark watermark, RequestClass requestClass,
+                     Callback callback) {
+        String key = normalize(url);
+        Call call = new Call(etag, lastModified, watermark, callback);
+        Parsed parsed = parsedFeeds.get(key);
+        if (parsed != null && System.currentTimeMillis() - parsed.time < FRESHNESS) {
+            deliver(call, parsed);
+            return call;
+        }
+
+        InFlight inFlight;
+        boolean startRequest = false;
+        synchronized (this) {
+            inFlight = inFlights.get(key);
+            if (inFlight == null || !inFlight.serves(etag, lastModified)) {
+                boolean conditional = inFlight == null;
+                inFlight = new InFlight(key, conditional ? etag : null, conditional ? lastModified : null);
+                inFlights.put(key, inFlight);
+                startRequest = true;
+            }
+            call.inFlight = inFlight;
+            inFlight.calls.add(call);
+        }
+        if (startRequest) {
+            request(url, requestClass, inFlight);
+        }
+        return call;
+    }
+
+    /**
+     * Hands the parsed feed to the caller: nothing if it stored exactly this content before,
+     * otherwise the items it does not know yet. The whole feed is handed out if the known item is
+     * not part of it anymore, or if the content changed without new items, as known items have
+     * been edited or removed then.
+     */
+    private static void deliver(Call call, Parsed parsed) {
+        if (parsed.isValidatedBy(call.etag, call.lastModified)) {
+            call.callback.onNotModified();
+            return;
+        }
+        RSSFeed newItems = call.watermark != null ? parsed.feed.since(call.watermark) : null;
+        boolean validated = parsed.etag != null || parsed.lastModified != null;
+        if (newItems == null || (newItems.getItems().isEmpty() && validated)) {
+            call.callback.onParsed(parsed.feed, parsed.etag, parsed.lastModified, true);
+        } else {
+            call.callback.onParsed(newItems, parsed.etag, parsed.lastModified, false);
+        }
+    }
+
+    private void request(String url, RequestClass requestClass, final InFlight inFlight) {
+        NetworkCommunication.loadRSSFeed(url, inFlight.etag, inFlight.lastModified, inFlight, requestClass, new Response.Listener<FeedRequest.Result>() {
+                    @Override
+                    public void onResponse(final FeedRequest.Result result) {
+                        if (result.notModified) {
+                            // only a conditional request, whose callers all have its validators
+                            for (Call call : finish(inFlight)) {
+                                call.callback.onNotModified();
+                            }
+                        } else {
+                            parseExecutor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    parse(inFlight, result);
+                                }
+                            });
+                        }
+                    }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        for (Call call : finish(inFlight)) {
+                            call.callback.onFailed();
+                        }
+                    }
+                }
+        );
+    }
+
+    private void parse(InFlight inFlight, FeedRequest.Result result) {
+        if (inFlight.abandoned) {
+            return;
+        }
+        RSSFeed feed;
+        try {
+            feed = parser.parse(new StoppableInputStream(inFlight, new ByteArrayInputStream(result.data)));
+        } catch (RSSFault e) {
+            if (!inFlight.abandoned) {
+                Log.e(TAG, "RSSFault", e);
+            }
+            for (Call call : finish(inFlight)) {
+                call.callback.onFailed();
+            }
+            return;
+        }
+        Parsed parsed = new Parsed(feed, result.etag, result.lastModified);
+        parsedFeeds.put(inFlight.key, parsed);
+        for (Call call : finish(inFlight)) {
+            deliver(call, parsed);
+        }
+    }
+
+    /**
+     * Removes the request from the running ones.
+     *
+     * @return the calls still waiting for it
+     */
+    private synchronized List<Call> finish(InFlight inFlight) {
+        if (inFlights.get(inFlight.key) == inFlight) {
+            inFlights.remove(inFlight.key);
+        }
+        List<Call> calls = new ArrayList<Call>(inFlight.calls);
+        inFlight.calls.clear();
+        return calls;
+    }
+
+    private synchronized void cancel(Call call) {
+        InFlight inFlight = call.inFlight;
+        if (inFlight == null || !inFlight.calls.remove(call) || !inFlight.calls.isEmpty()) {
+            return;
+        }
+        // nobody waits for the feed anymore
+        inFlight.abandoned = true;
+        if (inFlights.get(inFlight.key) == inFlight) {
+            inFlights.remove(inFlight.key);
+        }
+        NetworkCommunication.cancelRequests(inFlight);
+    }
+
+    /**
+     * Lower cased scheme and host without the fragment, so spellings of the same feed share a request.
+     */
+    static String normalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        url = url.trim();
+        try {
+            URI uri = new URI(url);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return url;
+            }
+            String scheme = uri.getScheme().toLowerCase();
+            int port = uri.getPort();
+            if (("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)) {
+                port = -1;
+            }
+            String path = uri.getRawPath();
+            if (path == null || path.length() == 0) {
+                path = "/";
+            }
+            StringBuilder normalized = new StringBuilder(scheme).append("://").append(uri.getHost().toLowerCase());
+            if (port != -1) {
+                normalized.append(":").append(port);
+            }
+            normalized.append(path);
+            if (uri.getRawQuery() != null) {
+                normalized.append("?").append(uri.getRawQuery());
+            }
+            return normalized.toString();
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Interest of one caller in a feed.
+     */
+    public class Call {
+        private final String etag;
+        private final String lastModified;
+        private final RSSWatermark watermark;
+        private final Callback callback;
+        /**
+         * The request the call waits for, {@code null} if it has been served from the parsed feeds
+         */
+        private InFlight inFlight;
+
+        private Call(String etag, String lastModified, RSSWatermark watermark, Callback callback) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.watermark = watermark;
+            this.callback = callback;
+        }
+
+        /**
+         * The callback is not called anymore. The request and its parsing are stopped if no
+         * other caller waits for them.
+         */
+        public void cancel() {
+            FeedCoalescer.this.cancel(this);
+        }
+    }
+
+    private static class InFlight {
+        private final String key;
+        /**
+         * Validators of the request, both {@code null} for an unconditional one
+         */
+        private final String etag;
+        private final String lastModified;
+        private final List<Call> calls = new ArrayList<Call>();
+        private volatile boolean abandoned = false;
+
+        private InFlight(String key, String etag, String lastModified) {
+            this.key = key;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return whether the response is of use for a caller with the validators, an answer
+         * without body only is for callers with the validators of the request
+         */
+        private boolean serves(String etag, String lastModified) {
+            if (this.etag == null && this.lastModified == null) {
+                return true;
+            }
+            return (etag == null ? this.etag == null : etag.equals(this.etag))
+                    && (lastModified == null ? this.lastModified == null : lastModified.equals(this.lastModified));
+        }
+    }
+
+    private static class Parsed {
+        private final RSSFeed feed;
+        private final String etag;
+        private final String lastModified;
+        private final long time = System.currentTimeMillis();
+
+        private Parsed(RSSFeed feed, String etag, String lastModified) {
+            this.feed = feed;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        private boolean isValidatedBy(String etag, String lastModified) {
+            if (etag == null && lastModified == null) {
+                return false;
+            }
+            return (etag == null ? this.etag == null : etag.equals(this.etag))
+                    && (lastModified == null ? this.lastModified == null : lastModified.equals(this.lastModified));
+        }
+    }
+
+    /**
+     * Lets the parser fail as soon as nobody waits for the feed anymore.
+     */
+    private static class StoppableInputStream extends FilterInputStream {
+        private final InFlight inFlight;
+
+        private StoppableInputStream(InFlight inFlight, InputStream in) {
+            super(in);
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkAbandoned();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            checkAbandoned();
+            return super.read(buffer, offset, count);
+        }
+
+        private void checkAbandoned() throws IOException {
+            if (inFlight.abandoned) {
+                throw new InterruptedIOException("feed abandoned");
+            }
+        }
+    }
+}
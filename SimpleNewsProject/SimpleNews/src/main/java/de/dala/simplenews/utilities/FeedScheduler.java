@@ -0,0 +1,125 @@
+package de.dala.simplenews.utilities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import de.dala.simplenews.common.Feed;
+
+/**
+ * Decides when a feed is refreshed next. Without further information a feed is refreshed after
+ * the time for refresh of the preferences. A feed that publishes often is refreshed more often,
+ * the {@code <ttl>} of the feed is never undercut, unchanged feeds are polled less and less often
+ * and failing feeds back off exponentially. Every interval gets some jitter, so feeds added
+ * together are not refreshed together forever.
+ */
+public class FeedScheduler {
+    public static final long MIN_INTERVAL = 1000 * 60 * 15; // 15 minutes
+    public static final long MAX_INTERVAL = 1000 * 60 * 60 * 24; // one day
+    /**
+     * Publication dates which are used to estimate how often a feed publishes
+     */
+    public static final int RATE_SAMPLE_SIZE = 10;
+    private static final int MAX_BACKOFF_SHIFT = 6;
+    private static final double JITTER = 0.1;
+
+    private static final Random random = new Random();
+
+    private FeedScheduler() {
+    }
+
+    public static boolean isDue(Feed feed, long now) {
+        return feed.getNextUpdate() == null || feed.getNextUpdate() <= now;
+    }
+
+    /**
+     * @return the visible feeds whose next refresh has passed
+     */
+    public static List<Feed> getDueFeeds(List<Feed> feeds) {
+        List<Feed> dueFeeds = new ArrayList<Feed>();
+        if (feeds == null) {
+            return dueFeeds;
+        }
+        long now = new Date().getTime();
+        for (Feed feed : feeds) {
+            if (feed.isVisible() && isDue(feed, now)) {
+                dueFeeds.add(feed);
+            }
+        }
+        return dueFeeds;
+    }
+
+    /**
+     * The feed has been fetched and parsed.
+     *
+     * @param ttl   {@code <ttl>} of the feed in minutes, may be {@code null}
+     * @param dates publication dates of the latest entries of the feed, including the stored ones,
+     *              at most {@link #RATE_SAMPLE_SIZE} are used
+     */
+    public static void updated(Feed feed, Integer ttl, List<Long> dates) {
+        long interval = getPublishInterval(dates);
+        if (ttl != null && ttl > 0) {
+            interval = Math.max(interval, ttl * 60L * 1000L);
+        }
+        feed.setFailureCount(0);
+        schedule(feed, interval);
+    }
+
+    /**
+     * The server answered that the feed did not change since the last refresh.
+     */
+    public static void notModified(Feed feed) {
+        long interval = feed.getUpdateInterval() != null ? feed.getUpdateInterval() : getDefaultInterval();
+        feed.setFailureCount(0);
+        schedule(feed, interval + interval / 2);
+    }
+
+    /**
+     * The feed could not be fetched or parsed.
+     */
+    public static void failed(Feed feed) {
+        int failures = feed.getFailureCount() + 1;
+        feed.setFailureCount(failures);
+        long interval = Math.max(getDefaultInterval(), feed.getUpdateInterval() != null ? feed.getUpdateInterval() : 0);
+        schedule(feed, interval << Math.min(failures, MAX_BACKOFF_SHIFT));
+    }
+
+    private static void schedule(Feed feed, long interval) {
+        interval = Math.max(MIN_INTERVAL, Math.min(MAX_INTERVAL, interval));
+        feed.setUpdateInterval(interval);
+        long jitter = (long) (interval * JITTER * (2 * random.nextDouble() - 1));
+        feed.setNextUpdate(new Date().getTime() + interval + jitter);
+    }
+
+    /**
+     * Half of the average time between the latest entries, so a new entry is usually seen
+     * before the next one is published.
+     */
+    private static long getPublishInterval(List<Long> latestDates) {
+        List<Long> dates = new ArrayList<Long>();
+        if (latestDates != null) {
+            for (Long date : latestDates) {
+                if (date != null && date > 0) {
+                    dates.add(date);
+                }
+            }
+        }
+        if (dates.size() < 2) {
+            return getDefaultInterval();
+        }
+        Collections.sort(dates, Collections.reverseOrder());
+        int newest = 0;
+        int oldest = Math.min(dates.size(), RATE_SAMPLE_SIZE) - 1;
+        long averageGap = (dates.get(newest) - dates.get(oldest)) / oldest;
+        // a feed which has been quiet for longer than its usual rhythm is polled less
+        long silence = new Date().getTime() - dates.get(newest);
+        return Math.max(averageGap, silence) / 2;
+    }
+
+    private static long getDefaultInterval() {
+        Long timeForRefresh = PrefUtilities.getInstance().getTimeForRefresh();
+        return timeForRefresh != null ? timeForRefresh : MIN_INTERVAL;
+    }
+}
@@ -0,0 +1,225 @@
+package de.dala.simplenews.utilities;
+
+/**
+ * Turns the HTML of feed descriptions into plain text in a single pass, without regular
+ * expressions and intermediate strings. Tags and comments are dropped together with the content
+ * of scripts and styles, entities are decoded and whitespace is collapsed. Block elements such as
+ * paragraphs separate words. A {@code <} is only the start of a tag if a {@code >} follows before
+ * the next {@code <}, otherwise it is kept as text.
+ */
+public class HtmlText {
+    private static final char ELLIPSIS = '\u2026';
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    private static final String[] ENTITY_NAMES = {"amp", "lt", "gt", "quot", "apos", "nbsp", "hellip",
+            "mdash", "ndash", "lsquo", "rsquo", "sbquo", "ldquo", "rdquo", "bdquo", "laquo", "raquo",
+            "copy", "reg", "trade", "euro", "deg", "middot", "bull", "auml", "ouml", "uuml", "Auml",
+            "Ouml", "Uuml", "szlig", "eacute", "egrave", "aacute", "agrave", "ccedil"};
+    private static final char[] ENTITY_CHARS = {'&', '<', '>', '"', '\'', '\u00A0', '\u2026',
+            '\u2014', '\u2013', '\u2018', '\u2019', '\u201A', '\u201C', '\u201D', '\u201E', '\u00AB', '\u00BB',
+            '\u00A9', '\u00AE', '\u2122', '\u20AC', '\u00B0', '\u00B7', '\u2022', '\u00E4', '\u00F6', '\u00FC', '\u00C4',
+            '\u00D6', '\u00DC', '\u00DF', '\u00E9', '\u00E8', '\u00E1', '\u00E0', '\u00E7'};
+    private static final String[] SKIPPED_ELEMENTS = {"script", "style"};
+    private static final String[] BLOCK_ELEMENTS = {"p", "br", "div", "li", "ul", "ol", "tr", "td", "th",
+            "h1", "h2", "h3", "h4", "h5", "h6", "blockquote", "hr", "img", "table"};
+
+    private HtmlText() {
+    }
+
+    /**
+     * @param maxLength the text is cut at a word boundary and ends with an ellipsis if it is
+     *                  longer, {@code 0} for no limit
+     * @return the plain text or {@code null} if the html is {@code null}
+     */
+    public static String toPlainText(String html, int maxLength) {
+        if (html == null) {
+            return null;
+        }
+        if (maxLength <= 0) {
+            maxLength = Integer.MAX_VALUE;
+        }
+        int length = html.length();
+        StringBuilder text = new StringBuilder(Math.min(length, maxLength) + 1);
+        boolean space = false;
+        boolean truncated = false;
+        int i = 0;
+        while (i < length) {
+            int c = html.charAt(i);
+            int next = i + 1;
+            if (c == '<') {
+                int end = skipMarkup(html, i);
+                if (end > i) {
+                    space |= isBlock(html, i);
+                    i = end;
+                    continue;
+                }
+            } else if (c == '&') {
+                int semicolon = findEntityEnd(html, i);
+                if (semicolon > 0) {
+                    int decoded = decodeEntity(html, i + 1, semicolon);
+                    if (decoded > 0) {
+                        c = decoded;
+                        next = semicolon + 1;
+                    }
+                }
+            }
+            i = next;
+
+            if (c == '\u00A0' || Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (text.length() >= maxLength) {
+                truncated = true;
+                break;
+            }
+            if (space && text.length() > 0) {
+                text.append(' ');
+            }
+            space = false;
+            text.appendCodePoint(c);
+        }
+
+        if (truncated) {
+            int lastSpace = text.lastIndexOf(" ");
+            if (lastSpace > maxLength / 2) {
+                text.setLength(lastSpace);
+            }
+            text.append(ELLIPSIS);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the index after the tag or comment at {@code start}, {@code start} if there is none
+     */
+    private static int skipMarkup(String html, int start) {
+        int length = html.length();
+        if (start + 1 >= length) {
+            return start;
+        }
+        char first = html.charAt(start + 1);
+        if (html.startsWith("<!--", start)) {
+            int end = html.indexOf("-->", start + 4);
+            return end < 0 ? length : end + 3;
+        }
+        if (!Character.isLetter(first) && first != '/' && first != '!' && first != '?') {
+            return start;
+        }
+        int end = skipTag(html, start);
+        if (end == start) {
+            return start;
+        }
+        for (String element : SKIPPED_ELEMENTS) {
+            if (first != '/' && isElement(html, start + 1, element)) {
+                // drop everything up to the end of the element
+                int close = html.indexOf("</", end);
+                while (close >= 0 && !isElement(html, close + 2, element)) {
+                    close = html.indexOf("</", close + 2);
+                }
+                if (close < 0) {
+                    return length;
+                }
+                int closeEnd = skipTag(html, close);
+                return closeEnd > close ? closeEnd : length;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @return the index after the {@code >} of the tag, ignoring the ones in quoted attributes,
+     * {@code start} if another {@code <} or the end of the text comes first
+     */
+    private static int skipTag(String html, int start) {
+        int length = html.length();
+        char quote = 0;
+        for (int i = start + 1; i < length; i++) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                return start;
+            } else if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            }
+        }
+        return start;
+    }
+
+    private static boolean isBlock(String html, int start) {
+        int nameStart = html.charAt(start + 1) == '/' ? start + 2 : start + 1;
+        for (String element : BLOCK_ELEMENTS) {
+            if (isElement(html, nameStart, element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isElement(String html, int nameStart, String element) {
+        int nameEnd = nameStart + element.length();
+        if (!html.regionMatches(true, nameStart, element, 0, element.length())) {
+            return false;
+        }
+        return nameEnd >= html.length() || !Character.isLetterOrDigit(html.charAt(nameEnd));
+    }
+
+    /**
+     * @return the index of the {@code ;} ending the entity at {@code start}, {@code -1} if there is none
+     */
+    private static int findEntityEnd(String html, int start) {
+        int end = Math.min(html.length(), start + MAX_ENTITY_LENGTH + 2);
+        for (int i = start + 1; i < end; i++) {
+            char c = html.charAt(i);
+            if (c == ';') {
+                return i > start + 1 ? i : -1;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '#') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the code point of the entity between {@code start} and {@code end}, {@code -1} if it is unknown
+     */
+    private static int decodeEntity(String html, int start, int end) {
+        if (html.charAt(start) == '#') {
+            int radix = 10;
+            int i = start + 1;
+            if (i < end && (html.charAt(i) == 'x' || html.charAt(i) == 'X')) {
+                radix = 16;
+                i++;
+            }
+            if (i == end) {
+                return -1;
+            }
+            int codePoint = 0;
+            for (; i < end; i++) {
+                int digit = Character.digit(html.charAt(i), radix);
+                if (digit < 0) {
+                    return -1;
+                }
+                codePoint = codePoint * radix + digit;
+                if (codePoint > Character.MAX_CODE_POINT) {
+                    return -1;
+                }
+            }
+            return codePoint;
+        }
+        int nameLength = end - start;
+        for (int i = 0; i < ENTITY_NAMES.length; i++) {
+            String name = ENTITY_NAMES[i];
+            if (name.length() == nameLength && html.regionMatches(start, name, 0, nameLength)) {
+                return ENTITY_CHARS[i];
+            }
+        }
+        return -1;
+    }
+}
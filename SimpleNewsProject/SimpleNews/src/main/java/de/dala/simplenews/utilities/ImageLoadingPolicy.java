@@ -0,0 +1,82 @@
+package de.dala.simplenews.utilities;
+
+import android.graphics.Rect;
+import android.widget.AbsListView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds back the image requests of a list while it is flung. Views which are flung past would
+ * start and cancel a request each; instead they are remembered and, once the list settles, the
+ * views on screen request their images first, from top to bottom, followed by the others which
+ * are still attached.
+ * <p/>
+ * Gets the scroll state through {@link #onScrollStateChanged(int)}. Must be used from the UI thread
+ */
+public class ImageLoadingPolicy {
+    private final Set<NetworkTextView> deferredViews = new LinkedHashSet<NetworkTextView>();
+    private final Rect visibleRect = new Rect();
+    private boolean flinging = false;
+
+    public void onScrollStateChanged(int scrollState) {
+        boolean wasFlinging = flinging;
+        flinging = scrollState == AbsListView.OnScrollListener.SCROLL_STATE_FLING;
+        if (wasFlinging && !flinging) {
+            resume();
+        }
+    }
+
+    /**
+     * @return whether the view has to wait for the list to settle
+     */
+    boolean defer(NetworkTextView view) {
+        if (!flinging) {
+            return false;
+        }
+        deferredViews.add(view);
+        return true;
+    }
+
+    /**
+     * The view does not wait for its image anymore.
+     */
+    void remove(NetworkTextView view) {
+        deferredViews.remove(view);
+    }
+
+    private void resume() {
+        final Map<NetworkTextView, Integer> visibleTops = new HashMap<NetworkTextView, Integer>();
+        List<NetworkTextView> visible = new ArrayList<NetworkTextView>();
+        List<NetworkTextView> others = new ArrayList<NetworkTextView>();
+        for (NetworkTextView view : deferredViews) {
+            if (view.getWindowToken() != null && view.getGlobalVisibleRect(visibleRect)) {
+                visibleTops.put(view, visibleRect.top);
+                visible.add(view);
+            } else {
+                others.add(view);
+            }
+        }
+        deferredViews.clear();
+        Collections.sort(visible, new Comparator<NetworkTextView>() {
+            @Override
+            public int compare(NetworkTextView lhs, NetworkTextView rhs) {
+                return visibleTops.get(lhs).compareTo(visibleTops.get(rhs));
+            }
+        });
+        for (NetworkTextView view : visible) {
+            view.resumeLoading();
+        }
+        for (NetworkTextView view : others) {
+            if (view.getWindowToken() != null) {
+                view.resumeLoading();
+            }
+        }
+    }
+}
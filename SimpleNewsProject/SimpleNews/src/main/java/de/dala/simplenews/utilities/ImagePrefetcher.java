@@ -0,0 +1,150 @@
+package de.dala.simplenews.utilities;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.dala.simplenews.common.Entry;
+import de.dala.simplenews.network.ImagePipeline;
+import de.dala.simplenews.network.RequestClass;
+import de.dala.simplenews.network.VolleySingleton;
+
+/**
+ * Loads the images of the newest entries after a refresh, so the cards show them as soon as they
+ * are scrolled to. The images are decoded for the card width into the memory cache and stay in
+ * the image disk cache. At most {@link #MAX_RUNNING_REQUESTS} images are loaded at once and at
+ * most {@link #MAX_BYTES} per refresh; nothing is loaded on metered networks or when the user
+ * turned it off.
+ * <p/>
+ * {@link #prefetch(Context, List)} may be called from any thread
+ */
+public class ImagePrefetcher {
+    /**
+     * Images of a category which are loaded per refresh
+     */
+    public static final int MAX_IMAGES = 10;
+    private static final int MAX_RUNNING_REQUESTS = 2;
+    private static final int MAX_BYTES = 2 * 1024 * 1024;
+
+    private static ImagePrefetcher instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Set<String> queuedUrls = new LinkedHashSet<String>();
+    private final Set<String> runningUrls = new HashSet<String>();
+    private int imageWidth;
+    private int loadedBytes;
+
+    private ImagePrefetcher() {
+    }
+
+    public static synchronized ImagePrefetcher getInstance() {
+        if (instance == null) {
+            instance = new ImagePrefetcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues the images of the newest {@link #MAX_IMAGES} entries.
+     */
+    public void prefetch(Context context, List<Entry> entries) {
+        if (!PrefUtilities.getInstance().shouldPrefetchImages() || !isUnmeteredNetwork(context)) {
+            return;
+        }
+        final List<String> urls = getNewestImageUrls(entries);
+        if (urls.isEmpty()) {
+            return;
+        }
+        final int width = UIUtils.getCardImageWidth(context);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (queuedUrls.isEmpty() && runningUrls.isEmpty()) {
+                    // a new batch with its own budget
+                    loadedBytes = 0;
+                }
+                imageWidth = width;
+                queuedUrls.addAll(urls);
+                loadNext();
+            }
+        });
+    }
+
+    private static List<String> getNewestImageUrls(List<Entry> entries) {
+        List<Entry> withImage = new ArrayList<Entry>();
+        for (Entry entry : entries) {
+            if (entry.getImageLink() != null) {
+                withImage.add(entry);
+            }
+        }
+        Collections.sort(withImage, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                long lhsDate = lhs.getDate() != null ? lhs.getDate() : 0;
+                long rhsDate = rhs.getDate() != null ? rhs.getDate() : 0;
+                return lhsDate > rhsDate ? -1 : (lhsDate == rhsDate ? 0 : 1);
+            }
+        });
+        List<String> urls = new ArrayList<String>();
+        for (int i = 0; i < withImage.size() && i < MAX_IMAGES; i++) {
+            urls.add(withImage.get(i).getImageLink());
+        }
+        return urls;
+    }
+
+    private static boolean isUnmeteredNetwork(Context context) {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected()
+                && !ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+
+    private void loadNext() {
+        ImagePipeline pipeline = VolleySingleton.getImagePipeline();
+        while (!queuedUrls.isEmpty() && runningUrls.size() < MAX_RUNNING_REQUESTS) {
+            if (loadedBytes >= MAX_BYTES) {
+                // the budget of the batch is spent
+                queuedUrls.clear();
+                return;
+            }
+            Iterator<String> iterator = queuedUrls.iterator();
+            final String url = iterator.next();
+            iterator.remove();
+            if (runningUrls.contains(url) || pipeline.getCached(url, imageWidth, 0) != null) {
+                continue;
+            }
+            runningUrls.add(url);
+            final ImagePipeline.Call[] call = new ImagePipeline.Call[1];
+            call[0] = pipeline.load(url, imageWidth, 0, RequestClass.PREFETCH_IMAGE, new ImagePipeline.Listener() {
+                @Override
+                public void onLoaded(Bitmap bitmap) {
+                    loadedBytes += call[0].getResponseBytes();
+                    requestFinished(url);
+                }
+
+                @Override
+                public void onFailed() {
+                    requestFinished(url);
+                }
+            });
+        }
+    }
+
+    private void requestFinished(String url) {
+        runningUrls.remove(url);
+        loadNext();
+    }
+}
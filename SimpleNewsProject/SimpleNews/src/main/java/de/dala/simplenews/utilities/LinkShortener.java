@@ -0,0 +1,242 @@
+package de.dala.simplenews.utilities;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.rosaloves.bitlyj.BitlyMethod;
+import com.rosaloves.bitlyj.data.Pair;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.dala.simplenews.database.DatabaseHandler;
+import de.dala.simplenews.network.NetworkCommunication;
+import de.dala.simplenews.parser.XmlParser;
+
+import static com.rosaloves.bitlyj.Bitly.shorten;
+
+/**
+ * Shortens links when they are about to be shared. Shortened links are stored by their link, so
+ * every link is shortened only once. Unknown links are queued and sent to Bitly one by one with
+ * at most {@link #MAX_RUNNING_REQUESTS} requests at once and {@link #REQUEST_INTERVAL} between
+ * two requests. The results of a batch are stored together once the queue is empty.
+ * <p/>
+ * Must be used from the UI thread, the stored links are read and written on a worker thread
+ */
+public class LinkShortener {
+    private static final String TAG = "LinkShortener";
+    private static final int MAX_RUNNING_REQUESTS = 2;
+    private static final long REQUEST_INTERVAL = 250;
+    /**
+     * Reads and writes the stored links in order
+     */
+    private static final ExecutorService DATABASE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    public interface Listener {
+        /**
+         * Some links have been read from the database or shortened.
+         */
+        void onShortened();
+    }
+
+    private static LinkShortener instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, String> shortenedLinks = new HashMap<String, String>();
+    private final Map<String, String> unsavedLinks = new HashMap<String, String>();
+    /**
+     * Links which are being read from the database
+     */
+    private final Set<String> lookedUpLinks = new HashSet<String>();
+    private final Set<String> queuedLinks = new LinkedHashSet<String>();
+    private final Set<String> runningLinks = new HashSet<String>();
+    /**
+     * Links Bitly could not shorten, they are shared as they are until the next start
+     */
+    private final Set<String> failedLinks = new HashSet<String>();
+    private final List<Listener> listeners = new ArrayList<Listener>();
+    private long lastRequestTime = 0;
+
+    private final Runnable sendNext = new Runnable() {
+        @Override
+        public void run() {
+            sendNext();
+        }
+    };
+
+    private LinkShortener() {
+    }
+
+    public static synchronized LinkShortener getInstance() {
+        if (instance == null) {
+            instance = new LinkShortener();
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the shortened links known in memory. The others are read from the database or queued,
+     * the listeners are informed once some of them are known.
+     *
+     * @return the shortened links by link, without the ones which are still unknown
+     */
+    public Map<String, String> getShortenedLinks(Collection<String> urls) {
+        Map<String, String> result = new HashMap<String, String>();
+        Set<String> unknown = new HashSet<String>();
+        for (String url : urls) {
+            if (url == null) {
+                continue;
+            }
+            String shortenedLink = shortenedLinks.get(url);
+            if (shortenedLink != null) {
+                result.put(url, shortenedLink);
+            } else if (!failedLinks.contains(url) && !lookedUpLinks.contains(url)
+                    && !queuedLinks.contains(url) && !runningLinks.contains(url)) {
+                unknown.add(url);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            lookUp(unknown);
+        }
+        return result;
+    }
+
+    private void lookUp(final Set<String> urls) {
+        lookedUpLinks.addAll(urls);
+        DATABASE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Map<String, String> storedLinks = DatabaseHandler.getInstance().getShortenedLinks(urls);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        lookedUp(urls, storedLinks);
+                    }
+                });
+            }
+        });
+    }
+
+    private void lookedUp(Set<String> urls, Map<String, String> storedLinks) {
+        lookedUpLinks.removeAll(urls);
+        shortenedLinks.putAll(storedLinks);
+        urls.removeAll(storedLinks.keySet());
+        if (!urls.isEmpty()) {
+            queuedLinks.addAll(urls);
+            sendNext();
+        }
+        if (!storedLinks.isEmpty()) {
+            notifyListeners();
+        }
+    }
+
+    private void sendNext() {
+        handler.removeCallbacks(sendNext);
+        if (queuedLinks.isEmpty() || runningLinks.size() >= MAX_RUNNING_REQUESTS) {
+            return;
+        }
+        long wait = lastRequestTime + REQUEST_INTERVAL - SystemClock.uptimeMillis();
+        if (wait > 0) {
+            handler.postDelayed(sendNext, wait);
+            return;
+        }
+
+        Iterator<String> iterator = queuedLinks.iterator();
+        final String url = iterator.next();
+        iterator.remove();
+        runningLinks.add(url);
+        lastRequestTime = SystemClock.uptimeMillis();
+        NetworkCommunication.loadShortenedUrl(getUrlForCall(shorten(url)), new Response.Listener<String>() {
+                    @Override
+                    public void onResponse(String s) {
+                        String shortenedUrl = XmlParser.getInstance().readShortenedLink(s);
+                        if (shortenedUrl != null) {
+                            shortenedLinks.put(url, shortenedUrl);
+                            unsavedLinks.put(url, shortenedUrl);
+                        } else {
+                            failedLinks.add(url);
+                        }
+                        requestFinished(url);
+                    }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError volleyError) {
+                        Log.e(TAG, String.format("%s could not be shortened", url));
+                        failedLinks.add(url);
+                        requestFinished(url);
+                    }
+                }
+        );
+        if (!queuedLinks.isEmpty()) {
+            handler.postDelayed(sendNext, REQUEST_INTERVAL);
+        }
+    }
+
+    private void requestFinished(String url) {
+        runningLinks.remove(url);
+        if (!queuedLinks.isEmpty()) {
+            sendNext();
+            return;
+        }
+        if (!runningLinks.isEmpty()) {
+            return;
+        }
+        // the batch is complete
+        if (!unsavedLinks.isEmpty()) {
+            final Map<String, String> links = new HashMap<String, String>(unsavedLinks);
+            unsavedLinks.clear();
+            DATABASE_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    DatabaseHandler.getInstance().addShortenedLinks(links);
+                }
+            });
+            notifyListeners();
+        }
+    }
+
+    private void notifyListeners() {
+        for (Listener listener : new ArrayList<Listener>(listeners)) {
+            listener.onShortened();
+        }
+    }
+
+    private String getUrlForCall(BitlyMethod<?> m) {
+        StringBuilder sb = new StringBuilder("http://api.bit.ly/v3/").append(m.getName()).append("?")
+                .append("&login=").append(Constants.USER)
+                .append("&apiKey=").append(Constants.API_KEY)
+                .append("&format=xml");
+
+        try {
+            for (Pair<String, String> p : m.getParameters()) {
+                sb.append("&").append(p.getOne()).append("=").append(URLEncoder.encode(p.getTwo(), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        return sb.toString();
+    }
+}
@@ -1,6 +1,7 @@
 package de.dala.simplenews.utilities;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.text.TextUtils;
@@ -8,11 +9,16 @@ import android.util.AttributeSet;
 import android.view.ViewGroup.LayoutParams;
 import android.widget.TextView;
 
-import com.android.volley.VolleyError;
-import com.android.volley.toolbox.ImageLoader;
+import de.dala.simplenews.network.ImagePipeline;
+import de.dala.simplenews.network.RequestClass;
 
 /**
  * Created by Daniel on 20.12.13.
+ * <p/>
+ * Shows a network image above its text. The image is decoded for the image width, see
+ * {@link #setImageWidth(int)}, and marked as shown in the memory cache while it is. With an
+ * {@link ImageLoadingPolicy} an image which is not in the memory cache is only requested while
+ * the list is not flung.
  */
 public class NetworkTextView extends TextView {
     /**
@@ -31,14 +37,34 @@ public class NetworkTextView extends TextView {
     private int mErrorImageId;
 
     /**
-     * Local copy of the ImageLoader.
+     * Local copy of the ImagePipeline.
      */
-    private ImageLoader mImageLoader;
+    private ImagePipeline mImagePipeline;
 
     /**
-     * Current ImageContainer. (either in-flight or finished)
+     * Decides when requests are sent, may be {@code null}
      */
-    private ImageLoader.ImageContainer mImageContainer;
+    private ImageLoadingPolicy mLoadingPolicy;
+
+    /**
+     * Width the image is decoded for in pixels, {@code 0} for the width of the view
+     */
+    private int mImageWidth;
+
+    /**
+     * Url of the current request, deferred request or image
+     */
+    private String mLoadedUrl;
+
+    /**
+     * Current request, {@code null} once it finished
+     */
+    private ImagePipeline.Call mCall;
+
+    /**
+     * Image which is shown, retained in the memory cache
+     */
+    private Bitmap mBitmap;
 
     public NetworkTextView(Context context) {
         this(context, null);
@@ -52,13 +78,25 @@ public class NetworkTextView extends TextView {
         super(context, attrs, defStyle);
     }
 
-    public void setImageUrl(String url, ImageLoader imageLoader) {
+    public void setImageUrl(String url, ImagePipeline imagePipeline) {
         mUrl = url;
-        mImageLoader = imageLoader;
+        mImagePipeline = imagePipeline;
         // The URL has potentially changed. See if we need to load it.
         loadImageIfNecessary(false);
     }
 
+    /**
+     * Sets the width the image is decoded for, the image is sampled down towards it. Views showing
+     * the same images should use the same width, so they share the decoded bitmaps.
+     */
+    public void setImageWidth(int imageWidth) {
+        mImageWidth = imageWidth;
+    }
+
+    public void setLoadingPolicy(ImageLoadingPolicy loadingPolicy) {
+        mLoadingPolicy = loadingPolicy;
+    }
+
     /**
      * Sets the default image resource ID to be used for this view until the attempt to load it
      * completes.
@@ -75,6 +113,14 @@ public class NetworkTextView extends TextView {
         mErrorImageId = errorImage;
     }
 
+    /**
+     * Loads a deferred image, called by the {@link ImageLoadingPolicy} once the list settled.
+     */
+    void resumeLoading() {
+        mLoadedUrl = null;
+        loadImageIfNecessary(false);
+    }
+
     /**
      * Loads the image for the view if it isn't already loaded.
      *
@@ -96,73 +142,95 @@ public class NetworkTextView extends TextView {
         // if the URL to be loaded in this view is empty, cancel any old requests and clear the
         // currently loaded image.
         if (TextUtils.isEmpty(mUrl)) {
-            if (mImageContainer != null) {
-                mImageContainer.cancelRequest();
-                mImageContainer = null;
-            }
+            clear();
             setDefaultImageOrNull();
             return;
         }
 
-        // if there was an old request in this view, check if it needs to be canceled.
-        if (mImageContainer != null && mImageContainer.getRequestUrl() != null) {
-            if (mImageContainer.getRequestUrl().equals(mUrl)) {
-                // if the request is from the same URL, return.
-                return;
-            } else {
-                // if there is a pre-existing request, cancel it if it's fetching a different URL.
-                mImageContainer.cancelRequest();
-                setDefaultImageOrNull();
-            }
+        // if the request is from the same URL, return.
+        if (mUrl.equals(mLoadedUrl)) {
+            return;
         }
+        // cancel a pre-existing request which is fetching a different URL.
+        clear();
 
-        // The pre-existing content of this view didn't match the current URL. Load the new image
-        // from the network.
-        ImageLoader.ImageContainer newContainer = mImageLoader.get(mUrl,
-                new ImageLoader.ImageListener() {
+        final int imageWidth = mImageWidth > 0 ? mImageWidth : Math.max(0, width - getPaddingLeft() - getPaddingRight());
+        Bitmap cached = mImagePipeline.getCached(mUrl, imageWidth, 0);
+        if (cached != null) {
+            if (isInLayoutPass) {
+                // setting the image inside of a layout pass would trigger a requestLayout inside
+                // of a layout, defer it by posting back to the main thread.
+                post(new Runnable() {
                     @Override
-                    public void onErrorResponse(VolleyError error) {
-                        if (mErrorImageId != 0) {
-                            Drawable d = getResources().getDrawable(mDefaultImageId);
-                            setCompoundDrawablesWithIntrinsicBounds(d, null, null, null);
-                        }
+                    public void run() {
+                        loadImageIfNecessary(false);
                     }
+                });
+                return;
+            }
+            mLoadedUrl = mUrl;
+            setBitmap(cached);
+            return;
+        }
 
-                    @Override
-                    public void onResponse(final ImageLoader.ImageContainer response, boolean isImmediate) {
-                        // If this was an immediate response that was delivered inside of a layout
-                        // pass do not set the image immediately as it will trigger a requestLayout
-                        // inside of a layout. Instead, defer setting the image by posting back to
-                        // the main thread.
-                        if (isImmediate && isInLayoutPass) {
-                            post(new Runnable() {
-                                @Override
-                                public void run() {
-                                    onResponse(response, false);
-                                }
-                            });
-                            return;
-                        }
-
-                        if (response.getBitmap() != null) {
-                            BitmapDrawable drawable = new BitmapDrawable(getResources(), response.getBitmap());
-                            setCompoundDrawablesWithIntrinsicBounds(drawable, null, null, null);
-                        } else if (mDefaultImageId != 0) {
-                            Drawable d = getResources().getDrawable(mDefaultImageId);
-                            setCompoundDrawablesWithIntrinsicBounds(d, null, null, null);
-                        }
-                    }
+        setDefaultImageOrNull();
+        mLoadedUrl = mUrl;
+        if (mLoadingPolicy != null && mLoadingPolicy.defer(this)) {
+            // requested by resumeLoading() once the list settled
+            return;
+        }
+        mCall = mImagePipeline.load(mUrl, imageWidth, 0, RequestClass.IMAGE, new ImagePipeline.Listener() {
+            @Override
+            public void onLoaded(Bitmap bitmap) {
+                mCall = null;
+                setBitmap(bitmap);
+            }
+
+            @Override
+            public void onFailed() {
+                mCall = null;
+                if (mErrorImageId != 0) {
+                    Drawable d = getResources().getDrawable(mErrorImageId);
+                    setCompoundDrawablesWithIntrinsicBounds(null, d, null, null);
                 }
-        );
+            }
+        });
+    }
+
+    private void setBitmap(Bitmap bitmap) {
+        mBitmap = bitmap;
+        mImagePipeline.getMemoryCache().retain(bitmap);
+        BitmapDrawable drawable = new BitmapDrawable(getResources(), bitmap);
+        // the bitmap is at least as wide as the image, scale it down to the width of the view
+        int availableWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        float scale = availableWidth > 0 ? Math.min(1f, (float) availableWidth / bitmap.getWidth()) : 1f;
+        drawable.setBounds(0, 0, Math.round(bitmap.getWidth() * scale), Math.round(bitmap.getHeight() * scale));
+        setCompoundDrawables(null, drawable, null, null);
+    }
 
-        // update the ImageContainer to be the new bitmap container.
-        mImageContainer = newContainer;
+    /**
+     * Cancels the request and stops showing the image.
+     */
+    private void clear() {
+        if (mLoadingPolicy != null) {
+            mLoadingPolicy.remove(this);
+        }
+        if (mCall != null) {
+            mCall.cancel();
+            mCall = null;
+        }
+        if (mBitmap != null) {
+            setCompoundDrawablesWithIntrinsicBounds(null, null, null, null);
+            mImagePipeline.getMemoryCache().release(mBitmap);
+            mBitmap = null;
+        }
+        mLoadedUrl = null;
     }
 
     private void setDefaultImageOrNull() {
         if (mDefaultImageId != 0) {
             Drawable d = getResources().getDrawable(mDefaultImageId);
-            setCompoundDrawablesWithIntrinsicBounds(d, null, null, null);
+            setCompoundDrawablesWithIntrinsicBounds(null, d, null, null);
         } else {
             setCompoundDrawablesWithIntrinsicBounds(null, null, null, null);
         }
@@ -176,14 +244,9 @@ public class NetworkTextView extends TextView {
 
     @Override
     protected void onDetachedFromWindow() {
-        if (mImageContainer != null) {
-            // If the view was bound to an image request, cancel it and clear
-            // out the image from the view.
-            mImageContainer.cancelRequest();
-            setCompoundDrawablesWithIntrinsicBounds(null, null, null, null);
-            // also clear out the container so we can reload the image if necessary.
-            mImageContainer = null;
-        }
+        // If the view was bound to an image request, cancel it and clear out the image from
+        // the view, so we can reload the image if necessary.
+        clear();
         super.onDetachedFromWindow();
     }
 
@@ -22,6 +22,8 @@ public class PrefUtilities {
     public static final String TIME_FOR_REFRESH = "time_for_refresh";
     public static final String DEPRECATED_TIME = "deprecated_time";
     public static final String SHORTEN_LINKS = "shorten_links";
+    public static final String SHOW_IMAGES = "show_images";
+    public static final String PREFETCH_IMAGES = "prefetch_images";
     public static final String MULTIPLE_COLUMNS_PORTRAIT = "multiple_columns_portrait";
     public static final String MULTIPLE_COLUMNS_LANDSCAPE = "multiple_columns_landscape";
     /**
@@ -96,6 +98,14 @@ public class PrefUtilities {
         return preferences.getBoolean(SHORTEN_LINKS, true);
     }
 
+    public boolean shouldShowImages() {
+        return preferences.getBoolean(SHOW_IMAGES, true);
+    }
+
+    public boolean shouldPrefetchImages() {
+        return shouldShowImages() && preferences.getBoolean(PREFETCH_IMAGES, true);
+    }
+
     public void increaseLaunchCountForRating() {
         int count = getLaunchCount();
         save(preferences.edit().putInt(LAUNCH_COUNT, count + 1));
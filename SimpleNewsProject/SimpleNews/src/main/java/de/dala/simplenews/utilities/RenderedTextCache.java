@@ -0,0 +1,91 @@
+package de.dala.simplenews.utilities;
+
+import android.support.v4.util.LongSparseArray;
+
+/**
+ * Texts of entries as returned by {@link UIUtils#renderMaybeHtml(String)}, so binding a card does
+ * not parse HTML again. Keyed by the entry, the hash of the text is kept with the rendered text
+ * and a changed text is rendered anew. A hit allocates nothing. Rows can be rendered ahead on a
+ * worker thread with {@link #prefetch(long, String)}.
+ */
+public class RenderedTextCache {
+    private static final int MAX_TEXTS = 300;
+
+    private static RenderedTextCache instance;
+
+    /**
+     * Guarded by this
+     */
+    private final LongSparseArray<Rendered> texts = new LongSparseArray<Rendered>(MAX_TEXTS + 1);
+    /**
+     * Counts the uses to find the least recently used text, guarded by this
+     */
+    private long uses;
+
+    private RenderedTextCache() {
+    }
+
+    public static synchronized RenderedTextCache getInstance() {
+        if (instance == null) {
+            instance = new RenderedTextCache();
+        }
+        return instance;
+    }
+
+    /**
+     * @return the rendered text, rendered now if it is not cached
+     */
+    public CharSequence get(long entryId, String text) {
+        if (text == null) {
+            return "";
+        }
+        int hash = text.hashCode();
+        synchronized (this) {
+            Rendered rendered = texts.get(entryId);
+            if (rendered != null && rendered.hash == hash) {
+                rendered.lastUse = ++uses;
+                return rendered.text;
+            }
+        }
+        // rendered without the lock, the UI thread does not wait for a prefetching worker
+        CharSequence rendered = UIUtils.renderMaybeHtml(text);
+        synchronized (this) {
+            texts.put(entryId, new Rendered(hash, rendered, ++uses));
+            if (texts.size() > MAX_TEXTS) {
+                removeLeastRecentlyUsed();
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * Renders the text if it is not cached yet.
+     * <p/>
+     * May be called from a worker thread
+     */
+    public void prefetch(long entryId, String text) {
+        get(entryId, text);
+    }
+
+    private void removeLeastRecentlyUsed() {
+        int oldest = 0;
+        for (int i = 1; i < texts.size(); i++) {
+            if (texts.valueAt(i).lastUse < texts.valueAt(oldest).lastUse) {
+                oldest = i;
+            }
+        }
+        texts.removeAt(oldest);
+    }
+
+    private static class Rendered {
+        final int hash;
+        final CharSequence text;
+        long lastUse;
+
+        Rendered(int hash, CharSequence text, long lastUse) {
+            this.hash = hash;
+            this.text = text;
+            this.lastUse = lastUse;
+        }
+    }
+}
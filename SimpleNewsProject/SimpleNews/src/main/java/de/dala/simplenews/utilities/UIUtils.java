@@ -15,7 +15,10 @@
  */
 package de.dala.simplenews.utilities;
 
+import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
@@ -24,6 +27,7 @@ import android.os.Build;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
 import android.text.Html;
+import android.text.Spanned;
 import android.text.TextUtils;
 import android.text.method.LinkMovementMethod;
 import android.util.Log;
@@ -36,6 +40,7 @@ import org.xmlpull.v1.XmlPullParserException;
 import java.io.IOException;
 import java.util.regex.Pattern;
 
+import de.dala.simplenews.R;
 import de.dala.simplenews.common.Category;
 import de.dala.simplenews.common.News;
 import de.dala.simplenews.parser.XmlParser;
@@ -73,15 +78,30 @@ public class UIUtils {
      * {@link TextView#setMovementMethod} so inline links are handled.
      */
     public static void setTextMaybeHtml(TextView view, String text) {
+        setRenderedText(view, renderMaybeHtml(text));
+    }
+
+    /**
+     * Formats the text through {@link Html#fromHtml(String)} when applicable. Does not touch
+     * any view, so it may run on a worker thread.
+     */
+    public static CharSequence renderMaybeHtml(String text) {
         if (TextUtils.isEmpty(text)) {
-            view.setText("");
-            return;
+            return "";
         }
         if ((text.contains("<") && text.contains(">")) || REGEX_HTML_ESCAPE.matcher(text).find()) {
-            view.setText(Html.fromHtml(text));
+            return Html.fromHtml(text);
+        }
+        return text;
+    }
+
+    /**
+     * Populate the given {@link TextView} with text returned by {@link #renderMaybeHtml(String)}.
+     */
+    public static void setRenderedText(TextView view, CharSequence text) {
+        view.setText(text);
+        if (text instanceof Spanned) {
             view.setMovementMethod(LinkMovementMethod.getInstance());
-        } else {
-            view.setText(text);
         }
     }
 
@@ -156,4 +176,17 @@ public class UIUtils {
         }
         return colorStateList;
     }
+
+    /**
+     * @return the width in pixels an image needs to fill a news card in the current orientation
+     * and column setting
+     */
+    public static int getCardImageWidth(Context context) {
+        Resources resources = context.getResources();
+        boolean landscape = resources.getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE;
+        boolean multipleColumns = landscape ? PrefUtilities.getInstance().useMultipleColumnsLandscape()
+                : PrefUtilities.getInstance().useMultipleColumnsPortrait();
+        int padding = resources.getDimensionPixelSize(R.dimen.card_layout_padding);
+        return resources.getDisplayMetrics().widthPixels / (multipleColumns ? 2 : 1) - 2 * padding;
+    }
 }